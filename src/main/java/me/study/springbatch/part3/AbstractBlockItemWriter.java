@@ -0,0 +1,128 @@
+package me.study.springbatch.part3;
+
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ItemStreamSupport;
+import org.springframework.batch.item.ItemStreamWriter;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * chunk 하나를 block 하나로 파일 끝에 쓰는 writer 의 공통 부분.
+ * 커밋된 block 끝 위치를 ExecutionContext 에 저장하고, 재시작하면 그 위치로 파일을 잘라낸 뒤 이어 쓴다.
+ * chunk 트랜잭션이 롤백되면 해당 block 도 잘라낸다.
+ */
+public abstract class AbstractBlockItemWriter<T> extends ItemStreamSupport implements ItemStreamWriter<T> {
+
+    private static final String POSITION = "position";
+
+    private final Path path;
+    private final int bufferSize;
+
+    private FileChannel channel;
+    private DataOutputStream out;
+
+    protected AbstractBlockItemWriter(Path path, int bufferSize, String name) {
+        this.path = path;
+        this.bufferSize = bufferSize;
+        setName(name);
+    }
+
+    protected abstract void writeHeader(DataOutputStream out) throws IOException;
+
+    protected abstract void writeBlock(List<? extends T> items, DataOutputStream out) throws IOException;
+
+    protected void writeFooter(DataOutputStream out) throws IOException {
+    }
+
+    @Override
+    public void open(ExecutionContext executionContext) throws ItemStreamException {
+        try {
+            Path parent = path.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), bufferSize));
+
+            if (executionContext.containsKey(getExecutionContextKey(POSITION))) {
+                truncate(executionContext.getLong(getExecutionContextKey(POSITION)));
+            } else {
+                truncate(0);
+                writeHeader(out);
+                out.flush();
+            }
+        } catch (IOException e) {
+            throw new ItemStreamException("Failed to open " + path, e);
+        }
+    }
+
+    @Override
+    public void write(List<? extends T> items) throws Exception {
+        long start = channel.position();
+        writeBlock(items, out);
+        out.flush();
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        try {
+                            truncate(start);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }
+                }
+            });
+        }
+    }
+
+    @Override
+    public void update(ExecutionContext executionContext) throws ItemStreamException {
+        if (channel == null) {
+            return;
+        }
+        try {
+            executionContext.putLong(getExecutionContextKey(POSITION), channel.position());
+        } catch (IOException e) {
+            throw new ItemStreamException("Failed to get position of " + path, e);
+        }
+    }
+
+    @Override
+    public void close() throws ItemStreamException {
+        if (channel == null) {
+            return;
+        }
+        try {
+            writeFooter(out);
+            out.flush();
+            channel.force(false);
+            out.close();
+        } catch (IOException e) {
+            throw new ItemStreamException("Failed to close " + path, e);
+        } finally {
+            channel = null;
+            out = null;
+        }
+    }
+
+    private void truncate(long position) throws IOException {
+        out.flush();
+        channel.truncate(position);
+        channel.position(position);
+    }
+}
@@ -0,0 +1,18 @@
+package me.study.springbatch.part3;
+
+import org.springframework.batch.item.file.transform.LineAggregator;
+
+/**
+ * 한 줄을 새 String 으로 만들지 않고 넘겨받은 StringBuilder 끝에 바로 이어 쓰는 LineAggregator.
+ */
+public interface AppendingLineAggregator<T> extends LineAggregator<T> {
+
+    void append(T item, StringBuilder out);
+
+    @Override
+    default String aggregate(T item) {
+        StringBuilder line = new StringBuilder();
+        append(item, line);
+        return line.toString();
+    }
+}
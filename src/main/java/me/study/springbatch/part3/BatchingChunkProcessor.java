@@ -0,0 +1,294 @@
+package me.study.springbatch.part3;
+
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.step.item.Chunk;
+import org.springframework.batch.core.step.item.SimpleChunkProcessor;
+import org.springframework.batch.core.step.skip.SkipPolicy;
+import org.springframework.batch.item.ItemWriter;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * item 마다 ItemProcessor 를 호출하는 대신 ChunkItemProcessor 에 chunk 전체를 한 번에 넘기는 ChunkProcessor.
+ * ItemProcessListener 는 item 마다 그대로 호출된다.
+ * 처리 중 예외가 나고 skipPolicy 가 있으면 item 하나씩 다시 처리해 실패한 item 만 skip 하고 process skip 으로 센다.
+ * filter 수에는 skip 된 item 을 넣지 않고, onSkipInProcess 는 write skip 과 마찬가지로 chunk 를 커밋할 때 호출한다.
+ * <p>
+ * 쓰기 중 skip 대상 예외가 나면 item 하나씩 다시 쓰는 대신 chunk 를 반으로 나눠 트랜잭션마다 한 구간씩 다시 쓴다.
+ * 실패한 구간만 다시 나누므로 n 개 중 k 개가 실패하면 O(k log n) 번의 트랜잭션으로 실패한 item 을 찾는다.
+ * 구간이 실패하면 WriteBisectionException 으로 트랜잭션을 롤백하고, 스텝은 이 예외를 삼킨 뒤 같은 chunk 로 다시 들어온다.
+ * 롤백된 트랜잭션의 read/filter/skip 수는 다음에 커밋되는 트랜잭션에 다시 더하고, SkipListener 도 그때 호출한다.
+ */
+public class BatchingChunkProcessor<I, O> extends SimpleChunkProcessor<I, O> {
+
+    private final ChunkItemProcessor<? super I, ? extends O> chunkItemProcessor;
+    private final SkipPolicy skipPolicy;
+
+    public BatchingChunkProcessor(ChunkItemProcessor<? super I, ? extends O> chunkItemProcessor,
+                                  ItemWriter<? super O> itemWriter,
+                                  SkipPolicy skipPolicy) {
+        super(itemWriter);
+        this.chunkItemProcessor = chunkItemProcessor;
+        this.skipPolicy = skipPolicy;
+    }
+
+    @Override
+    protected void initializeUserData(Chunk<I> inputs) {
+        if (!(inputs.getUserData() instanceof ChunkState)) {
+            inputs.setUserData(new ChunkState<O>(inputs.size()));
+        }
+    }
+
+    @Override
+    protected int getFilterCount(Chunk<I> inputs, Chunk<O> outputs) {
+        ChunkState<O> state = state(inputs);
+        if (state.filterCounted) {
+            return 0;
+        }
+        state.filterCounted = true;
+        return state.inputSize - state.processSkipCount - outputs.size();
+    }
+
+    @Override
+    protected Chunk<O> transform(StepContribution contribution, Chunk<I> inputs) throws Exception {
+        ChunkState<O> state = state(inputs);
+        if (state.outputs != null) {
+            return state.outputs;
+        }
+
+        List<I> items = new ArrayList<>(inputs.getItems());
+        for (I item : items) {
+            getListener().beforeProcess(item);
+        }
+
+        List<? extends O> results;
+        try {
+            results = processAll(items);
+        } catch (Exception e) {
+            if (skipPolicy == null) {
+                for (I item : items) {
+                    getListener().onProcessError(item, e);
+                }
+                throw e;
+            }
+            state.outputs = transformOneByOne(contribution, inputs, state);
+            return state.outputs;
+        }
+
+        Chunk<O> outputs = new Chunk<>();
+        int index = 0;
+        for (Chunk<I>.ChunkIterator iterator = inputs.iterator(); iterator.hasNext(); index++) {
+            I item = iterator.next();
+            O output = results.get(index);
+            getListener().afterProcess(item, output);
+            if (output != null) {
+                outputs.add(output);
+            } else {
+                iterator.remove();
+            }
+        }
+        state.outputs = outputs;
+        return outputs;
+    }
+
+    @Override
+    protected void write(StepContribution contribution, Chunk<I> inputs, Chunk<O> outputs) throws Exception {
+        ChunkState<O> state = state(inputs);
+        if (skipPolicy == null) {
+            doWrite(outputs.getItems());
+            contribution.incrementWriteCount(outputs.size());
+            return;
+        }
+
+        if (state.pending == null) {
+            try {
+                doWrite(outputs.getItems());
+            } catch (Exception e) {
+                checkSkippable(e, contribution);
+                state.pending = new ArrayDeque<>();
+                state.carry.add(contribution);
+                bisect(state, outputs, 0, outputs.size(), e);
+                throw new WriteBisectionException(e);
+            }
+            contribution.incrementWriteCount(outputs.size());
+            callSkipListeners(state);
+            return;
+        }
+
+        state.carry.applyTo(contribution);
+        if (!state.pending.isEmpty()) {
+            int[] range = state.pending.pop();
+            List<O> items = new ArrayList<>(outputs.getItems().subList(range[0], range[1]));
+            try {
+                doWrite(items);
+            } catch (Exception e) {
+                checkSkippable(e, contribution);
+                bisect(state, outputs, range[0], range[1], e);
+                throw new WriteBisectionException(e);
+            }
+            contribution.incrementWriteCount(items.size());
+        }
+
+        // 여기까지 오면 이번 트랜잭션은 커밋되므로 미뤄 둔 수와 SkipListener 를 반영한다.
+        callSkipListeners(state);
+        state.carry = new Counts();
+        inputs.setBusy(!state.pending.isEmpty());
+    }
+
+    private Chunk<O> transformOneByOne(StepContribution contribution, Chunk<I> inputs, ChunkState<O> state) throws Exception {
+        Chunk<O> outputs = new Chunk<>();
+
+        for (Chunk<I>.ChunkIterator iterator = inputs.iterator(); iterator.hasNext(); ) {
+            I item = iterator.next();
+            O output;
+            try {
+                output = processAll(Collections.singletonList(item)).get(0);
+            } catch (Exception e) {
+                getListener().onProcessError(item, e);
+                if (!skipPolicy.shouldSkip(e, contribution.getStepSkipCount())) {
+                    throw e;
+                }
+                contribution.incrementProcessSkipCount();
+                state.skipped.add(new SkippedItem(item, e, true));
+                iterator.remove();
+                state.processSkipCount++;
+                continue;
+            }
+
+            getListener().afterProcess(item, output);
+            if (output != null) {
+                outputs.add(output);
+            } else {
+                iterator.remove();
+            }
+        }
+        return outputs;
+    }
+
+    private List<? extends O> processAll(List<I> items) throws Exception {
+        List<? extends O> results = chunkItemProcessor.process(items);
+        if (results.size() != items.size()) {
+            throw new IllegalStateException("processor returned " + results.size()
+                    + " results for " + items.size() + " items");
+        }
+        return results;
+    }
+
+    private void checkSkippable(Exception e, StepContribution contribution) throws Exception {
+        if (!skipPolicy.shouldSkip(e, contribution.getStepSkipCount())) {
+            throw e;
+        }
+    }
+
+    /**
+     * 실패한 구간이 item 하나면 skip 으로 기록하고, 아니면 두 구간으로 나눠 앞쪽부터 다시 쓰도록 쌓는다.
+     */
+    private void bisect(ChunkState<O> state, Chunk<O> outputs, int from, int to, Exception e) {
+        if (to - from == 1) {
+            state.carry.writeSkipCount++;
+            state.skipped.add(new SkippedItem(outputs.getItems().get(from), e, false));
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        state.pending.push(new int[]{middle, to});
+        state.pending.push(new int[]{from, middle});
+    }
+
+    @SuppressWarnings("unchecked")
+    private void callSkipListeners(ChunkState<O> state) {
+        for (SkippedItem skipped : state.skipped) {
+            if (skipped.inProcess) {
+                getListener().onSkipInProcess((I) skipped.item, skipped.exception);
+            } else {
+                getListener().onSkipInWrite((O) skipped.item, skipped.exception);
+            }
+        }
+        state.skipped.clear();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <O> ChunkState<O> state(Chunk<?> inputs) {
+        return (ChunkState<O>) inputs.getUserData();
+    }
+
+    /**
+     * 쓰기에 실패한 구간의 트랜잭션을 롤백시키기 위한 예외. 스텝의 ExceptionHandler 가 삼키고 같은 chunk 를 다시 실행한다.
+     */
+    public static class WriteBisectionException extends RuntimeException {
+
+        public WriteBisectionException(Throwable cause) {
+            super("write failed, retrying the chunk in halves", cause);
+        }
+    }
+
+    private static class ChunkState<O> {
+
+        private final int inputSize;
+        private final List<SkippedItem> skipped = new ArrayList<>();
+        private Chunk<O> outputs;
+        private boolean filterCounted;
+        private int processSkipCount;
+        private Deque<int[]> pending;
+        private Counts carry = new Counts();
+
+        private ChunkState(int inputSize) {
+            this.inputSize = inputSize;
+        }
+    }
+
+    /**
+     * 롤백된 트랜잭션에서 사라진 contribution 값을 다음 커밋까지 들고 있는다.
+     */
+    private static class Counts {
+
+        private int readCount;
+        private int readSkipCount;
+        private int filterCount;
+        private int processSkipCount;
+        private int writeSkipCount;
+
+        private void add(StepContribution contribution) {
+            readCount += contribution.getReadCount();
+            readSkipCount += contribution.getReadSkipCount();
+            filterCount += contribution.getFilterCount();
+            processSkipCount += contribution.getProcessSkipCount();
+            writeSkipCount += contribution.getWriteSkipCount();
+        }
+
+        private void applyTo(StepContribution contribution) {
+            for (int i = 0; i < readCount; i++) {
+                contribution.incrementReadCount();
+            }
+            for (int i = 0; i < readSkipCount; i++) {
+                contribution.incrementReadSkipCount();
+            }
+            contribution.incrementFilterCount(filterCount);
+            for (int i = 0; i < processSkipCount; i++) {
+                contribution.incrementProcessSkipCount();
+            }
+            for (int i = 0; i < writeSkipCount; i++) {
+                contribution.incrementWriteSkipCount();
+            }
+        }
+    }
+
+    /**
+     * 커밋될 때까지 SkipListener 호출을 미뤄 둔 item. inProcess 가 false 면 write skip 이다.
+     */
+    private static class SkippedItem {
+
+        private final Object item;
+        private final Exception exception;
+        private final boolean inProcess;
+
+        private SkippedItem(Object item, Exception exception, boolean inProcess) {
+            this.item = item;
+            this.exception = exception;
+            this.inProcess = inProcess;
+        }
+    }
+}
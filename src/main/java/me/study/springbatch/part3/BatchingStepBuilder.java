@@ -0,0 +1,106 @@
+package me.study.springbatch.part3;
+
+import org.springframework.batch.core.SkipListener;
+import org.springframework.batch.core.step.builder.SimpleStepBuilder;
+import org.springframework.batch.core.step.item.ChunkOrientedTasklet;
+import org.springframework.batch.core.step.item.SimpleChunkProvider;
+import org.springframework.batch.core.step.skip.LimitCheckingItemSkipPolicy;
+import org.springframework.batch.core.step.skip.SkipPolicy;
+import org.springframework.batch.core.step.tasklet.Tasklet;
+import org.springframework.batch.core.step.tasklet.TaskletStep;
+import org.springframework.batch.item.ItemStream;
+import org.springframework.batch.repeat.exception.DefaultExceptionHandler;
+import org.springframework.batch.repeat.exception.ExceptionHandler;
+import org.springframework.util.Assert;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * ItemProcessor 대신 ChunkItemProcessor 를 쓰는 chunk 스텝 builder.
+ * reader, writer, listener 까지 설정한 SimpleStepBuilder 를 넘겨받아 BatchingChunkProcessor 로 tasklet 을 만든다.
+ * processor 가 ItemStream 이면 stream 으로 등록하고, listener 는 따로 등록해야 한다.
+ * skip 을 지정하면 처리나 쓰기 중 예외가 난 item 을 skipLimit 까지 건너뛰고, 쓰기 실패는 chunk 를 반씩 나눠 찾는다.
+ * 이때 지정한 exceptionHandler 는 bisection 예외를 뺀 나머지 예외를 그대로 받는다.
+ * exceptionHandler 는 감싸기 전 SimpleStepBuilder 가 아니라 이 builder 에 지정해야 한다.
+ */
+public class BatchingStepBuilder<I, O> extends SimpleStepBuilder<I, O> {
+
+    private final Map<Class<? extends Throwable>, Boolean> skippableExceptions = new HashMap<>();
+    private ChunkItemProcessor<? super I, ? extends O> chunkItemProcessor;
+    private ExceptionHandler exceptionHandler = new DefaultExceptionHandler();
+    private int skipLimit = 10;
+
+    public BatchingStepBuilder(SimpleStepBuilder<I, O> parent) {
+        super(parent);
+    }
+
+    public BatchingStepBuilder<I, O> chunkProcessor(ChunkItemProcessor<? super I, ? extends O> chunkItemProcessor) {
+        this.chunkItemProcessor = chunkItemProcessor;
+        if (chunkItemProcessor instanceof ItemStream) {
+            stream((ItemStream) chunkItemProcessor);
+        }
+        return this;
+    }
+
+    public BatchingStepBuilder<I, O> skip(Class<? extends Throwable> type) {
+        skippableExceptions.put(type, true);
+        return this;
+    }
+
+    public BatchingStepBuilder<I, O> skipLimit(int skipLimit) {
+        this.skipLimit = skipLimit;
+        return this;
+    }
+
+    public BatchingStepBuilder<I, O> listener(SkipListener<? super I, ? super O> listener) {
+        getItemListeners().add(listener);
+        return this;
+    }
+
+    @Override
+    public BatchingStepBuilder<I, O> exceptionHandler(ExceptionHandler exceptionHandler) {
+        this.exceptionHandler = exceptionHandler;
+        super.exceptionHandler(exceptionHandler);
+        return this;
+    }
+
+    @Override
+    public TaskletStep build() {
+        if (!skippableExceptions.isEmpty()) {
+            // 쓰기 실패 구간을 롤백한 뒤 같은 chunk 를 다시 실행하도록 bisection 예외만 삼키고 나머지는 지정한 handler 에 넘긴다.
+            ExceptionHandler delegate = this.exceptionHandler;
+            super.exceptionHandler((context, throwable) -> {
+                if (throwable instanceof BatchingChunkProcessor.WriteBisectionException) {
+                    return;
+                }
+                delegate.handleException(context, throwable);
+            });
+        }
+        return super.build();
+    }
+
+    @Override
+    protected Tasklet createTasklet() {
+        Assert.state(getReader() != null, "ItemReader must be provided");
+        Assert.state(getWriter() != null, "ItemWriter must be provided");
+        Assert.state(chunkItemProcessor != null, "ChunkItemProcessor must be provided");
+
+        SimpleChunkProvider<I> chunkProvider = new SimpleChunkProvider<>(getReader(), createChunkOperations());
+        BatchingChunkProcessor<I, O> chunkProcessor = new BatchingChunkProcessor<>(chunkItemProcessor, getWriter(), createSkipPolicy());
+        chunkProvider.setListeners(new ArrayList<>(getItemListeners()));
+        chunkProcessor.setListeners(new ArrayList<>(getItemListeners()));
+
+        ChunkOrientedTasklet<I> tasklet = new ChunkOrientedTasklet<>(chunkProvider, chunkProcessor);
+        tasklet.setBuffering(!isReaderTransactionalQueue());
+        return tasklet;
+    }
+
+    private SkipPolicy createSkipPolicy() {
+        if (skippableExceptions.isEmpty()) {
+            return null;
+        }
+        return new LimitCheckingItemSkipPolicy(skipLimit, skippableExceptions);
+    }
+}
@@ -0,0 +1,17 @@
+package me.study.springbatch.part3;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * 복사 없이 내부 배열을 codec 에 넘기기 위한 ByteArrayOutputStream.
+ */
+class BlockBuffer extends ByteArrayOutputStream {
+
+    BlockBuffer(int size) {
+        super(size);
+    }
+
+    byte[] array() {
+        return buf;
+    }
+}
@@ -0,0 +1,52 @@
+package me.study.springbatch.part3;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * block 단위 출력에 쓰는 압축 방식.
+ * GZIP 계열은 block 마다 독립된 gzip member 를 쓰므로 이어 붙인 파일도 하나의 gzip 파일로 읽힌다.
+ */
+public enum BlockCodec {
+
+    NONE(null),
+    GZIP(Deflater.DEFAULT_COMPRESSION),
+    GZIP_FAST(Deflater.BEST_SPEED);
+
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+
+    private final Integer level;
+
+    BlockCodec(Integer level) {
+        this.level = level;
+    }
+
+    public void encode(byte[] bytes, int length, OutputStream out) throws IOException {
+        if (level == null) {
+            out.write(bytes, 0, length);
+            return;
+        }
+
+        OutputStream target = new FilterOutputStream(out) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        int deflateLevel = level;
+        try (GZIPOutputStream gzip = new GZIPOutputStream(target, GZIP_BUFFER_SIZE) {
+            {
+                def.setLevel(deflateLevel);
+            }
+        }) {
+            gzip.write(bytes, 0, length);
+        }
+    }
+}
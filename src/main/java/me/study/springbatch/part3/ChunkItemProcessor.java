@@ -0,0 +1,44 @@
+package me.study.springbatch.part3;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * chunk 전체를 한 번에 받아 처리하는 processor.
+ * 반환 목록은 입력과 같은 크기이고 같은 위치에 결과를 두며, null 인 자리는 filter 된 item 이다.
+ * 예외가 나면 skip 판단을 위해 item 하나짜리 목록으로 다시 호출될 수 있으므로 다시 실행해도 결과가 같아야 한다.
+ * andThen 으로 이은 뒤쪽 processor 가 실패해도 앞쪽 processor 까지 다시 실행되므로, 상태를 남기는 processor 는 같은 item 을 다시 받을 때를 고려해야 한다.
+ */
+@FunctionalInterface
+public interface ChunkItemProcessor<I, O> {
+
+    List<O> process(List<? extends I> items) throws Exception;
+
+    /**
+     * filter 되지 않은 결과만 모아 next 에 넘기고, next 의 결과를 원래 위치로 되돌려 놓는다.
+     */
+    default <R> ChunkItemProcessor<I, R> andThen(ChunkItemProcessor<? super O, ? extends R> next) {
+        return items -> {
+            List<O> outputs = process(items);
+
+            List<O> survivors = new ArrayList<>(outputs.size());
+            for (O output : outputs) {
+                if (output != null) {
+                    survivors.add(output);
+                }
+            }
+            List<? extends R> nextOutputs = next.process(survivors);
+            if (nextOutputs.size() != survivors.size()) {
+                throw new IllegalStateException("processor returned " + nextOutputs.size()
+                        + " results for " + survivors.size() + " items");
+            }
+
+            List<R> results = new ArrayList<>(outputs.size());
+            int index = 0;
+            for (O output : outputs) {
+                results.add(output == null ? null : nextOutputs.get(index++));
+            }
+            return results;
+        };
+    }
+}
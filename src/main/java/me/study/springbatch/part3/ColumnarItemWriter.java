@@ -0,0 +1,111 @@
+package me.study.springbatch.part3;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * chunk 하나를 열(column) 단위 block 으로 쓰는 간단한 바이너리 writer.
+ * 파일은 "BCOL" 헤더(codec, 컬럼 이름과 타입) 뒤에 block 이 이어지며,
+ * block 은 행 수와 컬럼마다 [min, max(숫자 컬럼만), 압축된 길이, 압축된 값들] 로 이루어진다.
+ * 숫자 컬럼의 min/max 로 block 을 읽지 않고 건너뛸 수 있다.
+ */
+public class ColumnarItemWriter<T> extends AbstractBlockItemWriter<T> {
+
+    private static final byte[] MAGIC = {'B', 'C', 'O', 'L'};
+    private static final int VERSION = 1;
+    private static final int BLOCK_SIZE = 64 * 1024;
+
+    private final List<Column<T>> columns;
+    private final BlockCodec codec;
+    private final BlockBuffer raw = new BlockBuffer(BLOCK_SIZE);
+    private final DataOutputStream rawOut = new DataOutputStream(raw);
+    private final BlockBuffer encoded = new BlockBuffer(BLOCK_SIZE);
+
+    public ColumnarItemWriter(Path path, List<Column<T>> columns, BlockCodec codec, int bufferSize, String name) {
+        super(path, bufferSize, name);
+        this.columns = columns;
+        this.codec = codec;
+    }
+
+    @Override
+    protected void writeHeader(DataOutputStream out) throws IOException {
+        out.write(MAGIC);
+        out.writeByte(VERSION);
+        out.writeByte(codec.ordinal());
+        out.writeShort(columns.size());
+        for (Column<T> column : columns) {
+            out.writeUTF(column.name);
+            out.writeByte(column.type.ordinal());
+        }
+    }
+
+    @Override
+    protected void writeBlock(List<? extends T> items, DataOutputStream out) throws IOException {
+        out.writeInt(items.size());
+        for (Column<T> column : columns) {
+            raw.reset();
+            if (column.type == ColumnType.STRING) {
+                for (T item : items) {
+                    String value = column.stringValue.apply(item);
+                    rawOut.writeUTF(value == null ? "" : value);
+                }
+            } else {
+                long min = Long.MAX_VALUE;
+                long max = Long.MIN_VALUE;
+                for (T item : items) {
+                    long value = column.longValue.applyAsLong(item);
+                    min = Math.min(min, value);
+                    max = Math.max(max, value);
+                    rawOut.writeLong(value);
+                }
+                out.writeLong(min);
+                out.writeLong(max);
+            }
+            rawOut.flush();
+
+            encoded.reset();
+            codec.encode(raw.array(), raw.size(), encoded);
+            out.writeInt(encoded.size());
+            out.write(encoded.array(), 0, encoded.size());
+        }
+    }
+
+    public enum ColumnType {
+        LONG, DATE, STRING
+    }
+
+    public static class Column<T> {
+
+        private final String name;
+        private final ColumnType type;
+        private final ToLongFunction<T> longValue;
+        private final Function<T, String> stringValue;
+
+        private Column(String name, ColumnType type, ToLongFunction<T> longValue, Function<T, String> stringValue) {
+            this.name = name;
+            this.type = type;
+            this.longValue = longValue;
+            this.stringValue = stringValue;
+        }
+
+        public static <T> Column<T> longColumn(String name, ToLongFunction<T> value) {
+            return new Column<>(name, ColumnType.LONG, value, null);
+        }
+
+        /**
+         * 날짜는 epoch day 로 저장한다.
+         */
+        public static <T> Column<T> dateColumn(String name, Function<T, LocalDate> value) {
+            return new Column<>(name, ColumnType.DATE, item -> value.apply(item).toEpochDay(), null);
+        }
+
+        public static <T> Column<T> stringColumn(String name, Function<T, String> value) {
+            return new Column<>(name, ColumnType.STRING, null, value);
+        }
+    }
+}
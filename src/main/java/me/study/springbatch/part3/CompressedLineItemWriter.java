@@ -0,0 +1,73 @@
+package me.study.springbatch.part3;
+
+import org.springframework.batch.item.file.transform.LineAggregator;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * FlatFileItemWriter 처럼 한 줄씩 쓰되 chunk 단위 block 을 BlockCodec 으로 압축해서 쓴다.
+ * BlockCodec.NONE 이면 일반 텍스트 파일과 같다.
+ */
+public class CompressedLineItemWriter<T> extends AbstractBlockItemWriter<T> {
+
+    private static final int BLOCK_SIZE = 256 * 1024;
+
+    private final LineAggregator<T> lineAggregator;
+    private final BlockCodec codec;
+    private final String header;
+    private final String footer;
+    private final BlockBuffer block = new BlockBuffer(BLOCK_SIZE);
+    private final Writer blockWriter = new OutputStreamWriter(block, StandardCharsets.UTF_8);
+
+    public CompressedLineItemWriter(Path path,
+                                    LineAggregator<T> lineAggregator,
+                                    BlockCodec codec,
+                                    String header,
+                                    String footer,
+                                    int bufferSize,
+                                    String name) {
+        super(path, bufferSize, name);
+        this.lineAggregator = lineAggregator;
+        this.codec = codec;
+        this.header = header;
+        this.footer = footer;
+    }
+
+    @Override
+    protected void writeHeader(DataOutputStream out) throws IOException {
+        writeLines(header, out);
+    }
+
+    @Override
+    protected void writeBlock(List<? extends T> items, DataOutputStream out) throws IOException {
+        block.reset();
+        for (T item : items) {
+            blockWriter.write(lineAggregator.aggregate(item));
+            blockWriter.write('\n');
+        }
+        blockWriter.flush();
+        codec.encode(block.array(), block.size(), out);
+    }
+
+    @Override
+    protected void writeFooter(DataOutputStream out) throws IOException {
+        writeLines(footer, out);
+    }
+
+    private void writeLines(String lines, DataOutputStream out) throws IOException {
+        if (lines == null) {
+            return;
+        }
+        block.reset();
+        blockWriter.write(lines);
+        blockWriter.write('\n');
+        blockWriter.flush();
+        codec.encode(block.array(), block.size(), out);
+    }
+}
@@ -0,0 +1,47 @@
+package me.study.springbatch.part3;
+
+import org.springframework.batch.item.database.builder.JdbcCursorItemReaderBuilder;
+import org.springframework.batch.support.DatabaseType;
+import org.springframework.jdbc.support.MetaDataAccessException;
+
+import javax.sql.DataSource;
+
+/**
+ * JdbcCursorItemReader 가 결과를 가져오는 방식.
+ * <ul>
+ *     <li>DEFAULT: 드라이버 기본값. MySQL 은 결과 전체를 클라이언트 메모리에 올린다.</li>
+ *     <li>STREAMING: MySQL 은 fetchSize = Integer.MIN_VALUE 로 한 행씩 스트리밍하고, 그 밖의 DB 는 fetchSize 를 그대로 쓴다.</li>
+ *     <li>CURSOR_FETCH: fetchSize 만큼씩 가져온다. MySQL 은 접속 URL 에 useCursorFetch=true 가 있어야 서버 커서를 쓰고, 공용 DataSource 에는 이 옵션이 없다.</li>
+ * </ul>
+ * reader 는 chunk 트랜잭션과 별개의 커넥션을 스텝이 끝날 때까지 잡고 있으므로 스트리밍 중인 커넥션으로 다른 쿼리가 나가지 않는다.
+ */
+public enum CursorFetchMode {
+
+    DEFAULT,
+    STREAMING,
+    CURSOR_FETCH;
+
+    public <T> JdbcCursorItemReaderBuilder<T> configure(JdbcCursorItemReaderBuilder<T> builder,
+                                                        DataSource dataSource,
+                                                        int fetchSize) {
+        builder.dataSource(dataSource)
+                .useSharedExtendedConnection(false)
+                .driverSupportsAbsolute(false);
+
+        if (this == STREAMING && isMySql(dataSource)) {
+            return builder.fetchSize(Integer.MIN_VALUE);
+        }
+        if (this != DEFAULT) {
+            return builder.fetchSize(fetchSize);
+        }
+        return builder;
+    }
+
+    private static boolean isMySql(DataSource dataSource) {
+        try {
+            return DatabaseType.fromMetaData(dataSource) == DatabaseType.MYSQL;
+        } catch (MetaDataAccessException e) {
+            throw new IllegalStateException("Failed to read database type", e);
+        }
+    }
+}
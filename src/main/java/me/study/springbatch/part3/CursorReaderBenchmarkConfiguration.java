@@ -0,0 +1,150 @@
+package me.study.springbatch.part3;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.Step;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.configuration.annotation.JobBuilderFactory;
+import org.springframework.batch.core.configuration.annotation.JobScope;
+import org.springframework.batch.core.configuration.annotation.StepBuilderFactory;
+import org.springframework.batch.core.launch.support.RunIdIncrementer;
+import org.springframework.batch.core.listener.StepExecutionListenerSupport;
+import org.springframework.batch.item.ItemReader;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.batch.item.database.JdbcCursorItemReader;
+import org.springframework.batch.item.database.builder.JdbcCursorItemReaderBuilder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import javax.sql.DataSource;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 다른 job 이 쓰는 person 대신 person_benchmark 테이블을 rows 건(기본 1천만 건)으로 맞춘 뒤
+ * CursorFetchMode 별로 같은 쿼리를 읽어 처리량과 최대 heap 사용량을 로그로 비교한다.
+ * 테이블이 rows 보다 작으면 모자란 만큼만 채우고, 크면 비운 뒤 다시 채우므로 매번 같은 건수로 비교한다.
+ * MySQL 에서 CURSOR_FETCH 는 useCursorFetch=true 를 붙인 별도 DataSource 로 읽어 다른 job 의 커넥션 설정은 바꾸지 않는다.
+ */
+@Configuration
+@Slf4j
+public class CursorReaderBenchmarkConfiguration {
+
+    private static final String JOB_NAME = "cursorReaderBenchmarkJob";
+    private static final int CHUNK = 10_000;
+    private static final int FETCH_SIZE = 1_000;
+    private static final String TABLE = "person_benchmark";
+
+    private final JobBuilderFactory jobBuilderFactory;
+    private final StepBuilderFactory stepBuilderFactory;
+    private final DataSource dataSource;
+    private final Environment environment;
+
+    public CursorReaderBenchmarkConfiguration(JobBuilderFactory jobBuilderFactory,
+                                              StepBuilderFactory stepBuilderFactory,
+                                              DataSource dataSource,
+                                              Environment environment) {
+        this.jobBuilderFactory = jobBuilderFactory;
+        this.stepBuilderFactory = stepBuilderFactory;
+        this.dataSource = dataSource;
+        this.environment = environment;
+    }
+
+    @Bean(JOB_NAME)
+    public Job cursorReaderBenchmarkJob() throws Exception {
+        return jobBuilderFactory.get(JOB_NAME)
+                .incrementer(new RunIdIncrementer())
+                .start(seedPersonStep(null))
+                .next(cursorReadStep(CursorFetchMode.DEFAULT))
+                .next(cursorReadStep(CursorFetchMode.STREAMING))
+                .next(cursorReadStep(CursorFetchMode.CURSOR_FETCH))
+                .build();
+    }
+
+    @Bean(JOB_NAME + "_seedPersonStep")
+    @JobScope
+    public Step seedPersonStep(@Value("#{jobParameters[rows] ?: 10000000}") Long rows) {
+        AtomicLong sequence = new AtomicLong();
+        ItemReader<Person> itemReader = () -> {
+            long value = sequence.incrementAndGet();
+            if (value > rows) {
+                return null;
+            }
+            return new Person("name" + value, (int) (value % 100), "address" + value % 1_000);
+        };
+
+        return stepBuilderFactory.get(JOB_NAME + "_seedPersonStep")
+                .<Person, Person>chunk(CHUNK)
+                .reader(itemReader)
+                .writer(new MultiRowInsertItemWriter<>(dataSource, TABLE, Person.class,
+                        1_000, 1024 * 1024, "name", "age", "address"))
+                .listener(new StepExecutionListenerSupport() {
+                    @Override
+                    public void beforeStep(StepExecution stepExecution) {
+                        sequence.set(prepareTable(rows));
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * person_benchmark 를 만들고 이미 들어 있는 건수를 돌려준다. rows 보다 많으면 비우고 0 을 돌려준다.
+     */
+    private long prepareTable(long rows) {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("create table if not exists " + TABLE
+                + " (id bigint auto_increment primary key, name varchar(255), age int, address varchar(255))");
+
+        Long count = jdbcTemplate.queryForObject("select count(*) from " + TABLE, Long.class);
+        if (count != null && count > rows) {
+            jdbcTemplate.execute("truncate table " + TABLE);
+            count = 0L;
+        }
+        log.info("{} has {} rows, seeding up to {}", TABLE, count, rows);
+        return count == null ? 0 : count;
+    }
+
+    private Step cursorReadStep(CursorFetchMode fetchMode) throws Exception {
+        return stepBuilderFactory.get(JOB_NAME + "_" + fetchMode.name().toLowerCase() + "Step")
+                .<Person, Person>chunk(CHUNK)
+                .reader(personItemReader(fetchMode))
+                .writer(noOpItemWriter())
+                .listener(new ReaderBenchmarkListener())
+                .build();
+    }
+
+    private JdbcCursorItemReader<Person> personItemReader(CursorFetchMode fetchMode) throws Exception {
+        DataSource readerDataSource = fetchMode == CursorFetchMode.CURSOR_FETCH ? cursorFetchDataSource() : dataSource;
+        JdbcCursorItemReader<Person> itemReader = fetchMode
+                .configure(new JdbcCursorItemReaderBuilder<Person>(), readerDataSource, FETCH_SIZE)
+                .name(JOB_NAME + "_" + fetchMode.name().toLowerCase() + "ItemReader")
+                .sql("select id, name, age, address from " + TABLE)
+                .rowMapper((rs, rowNum) -> new Person(
+                        rs.getInt(1), rs.getString(2), rs.getInt(3), rs.getString(4)))
+                .saveState(false)
+                .build();
+        itemReader.afterPropertiesSet();
+        return itemReader;
+    }
+
+    /**
+     * MySQL 이면 같은 접속 정보에 useCursorFetch=true 만 붙인 DataSource 를 만든다. 그 밖의 DB 는 공용 DataSource 를 쓴다.
+     */
+    private DataSource cursorFetchDataSource() {
+        String url = environment.getProperty("spring.datasource.hikari.jdbc-url");
+        if (url == null || !url.startsWith("jdbc:mysql:")) {
+            return dataSource;
+        }
+        return new DriverManagerDataSource(url + (url.contains("?") ? "&" : "?") + "useCursorFetch=true",
+                environment.getProperty("spring.datasource.hikari.username"),
+                environment.getProperty("spring.datasource.hikari.password"));
+    }
+
+    private ItemWriter<Person> noOpItemWriter() {
+        return items -> {
+        };
+    }
+}
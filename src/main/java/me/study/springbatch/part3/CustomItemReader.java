@@ -1,27 +1,167 @@
 package me.study.springbatch.part3;
 
-import org.springframework.batch.item.ItemReader;
-import org.springframework.batch.item.NonTransientResourceException;
-import org.springframework.batch.item.ParseException;
-import org.springframework.batch.item.UnexpectedInputException;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ItemStreamReader;
+import org.springframework.batch.item.ItemStreamSupport;
+import org.springframework.util.ClassUtils;
 
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
-public class CustomItemReader<T> implements ItemReader<T> {
+/**
+ * 메모리에 있는 목록을 원자적 index 로 O(1) 에 하나씩 넘겨주는 reader.
+ * blockSize 가 1 보다 크면 스레드마다 연속된 block 을 가져가 읽는다.
+ * 공유 cursor 가 끝나면 다른 스레드가 다 읽지 못한 block 을 이어서 나눠 읽으므로, 한 스레드가 null 을 받아 스텝이 끝나도 남는 item 이 없다.
+ * 넘겨준 자리는 null 로 비워 GC 되게 하고, 앞에서부터 모두 넘겨준 위치를 ExecutionContext 에 저장해 재시작 시 이어서 읽는다.
+ * 멀티 스레드 스텝에서는 다른 스레드의 커밋되지 않은 chunk 도 넘겨준 것으로 보므로 saveState 를 끄는 것이 안전하다.
+ */
+public class CustomItemReader<T> extends ItemStreamSupport implements ItemStreamReader<T> {
 
-    private final List<T> items;
+    private static final String POSITION = "position";
+
+    private final AtomicReferenceArray<T> items;
+    private final int blockSize;
+    private final AtomicInteger cursor = new AtomicInteger();
+    private final ThreadLocal<Block> block = new ThreadLocal<>();
+    private final List<Block> blocks = new ArrayList<>();
+
+    private int watermark;
+    private boolean saveState = true;
 
     public CustomItemReader(List<T> items) {
-        this.items = new ArrayList<>(items);
+        this(items, 1);
+    }
+
+    public CustomItemReader(List<T> items, int blockSize) {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("blockSize must be positive");
+        }
+        T[] array = items.toArray(newArray(items.size()));
+        for (T item : array) {
+            if (item == null) {
+                throw new IllegalArgumentException("items must not contain null");
+            }
+        }
+        this.items = new AtomicReferenceArray<>(array);
+        this.blockSize = blockSize;
+        setName(ClassUtils.getShortName(CustomItemReader.class));
+    }
+
+    public void setSaveState(boolean saveState) {
+        this.saveState = saveState;
+    }
+
+    @Override
+    public T read() {
+        while (true) {
+            int index = nextIndex();
+            if (index < 0) {
+                return null;
+            }
+            // 재시작으로 비워 둔 자리는 건너뛴다.
+            T item = items.getAndSet(index, null);
+            if (item != null) {
+                return item;
+            }
+        }
+    }
+
+    @Override
+    public synchronized void open(ExecutionContext executionContext) throws ItemStreamException {
+        int position = executionContext.getInt(getExecutionContextKey(POSITION), 0);
+        for (int i = watermark; i < position && i < items.length(); i++) {
+            items.set(i, null);
+        }
+        watermark = Math.max(watermark, Math.min(position, items.length()));
+        cursor.set(Math.max(cursor.get(), watermark));
+        blocks.clear();
+        block.remove();
+    }
+
+    @Override
+    public synchronized void update(ExecutionContext executionContext) throws ItemStreamException {
+        if (!saveState) {
+            return;
+        }
+        while (watermark < items.length() && items.get(watermark) == null) {
+            watermark++;
+        }
+        executionContext.putInt(getExecutionContextKey(POSITION), watermark);
     }
 
     @Override
-    public T read() throws UnexpectedInputException, ParseException, NonTransientResourceException {
-        if (!items.isEmpty()) {
-            return items.remove(0);
+    public synchronized void close() throws ItemStreamException {
+        blocks.clear();
+        block.remove();
+    }
+
+    private int nextIndex() {
+        int length = items.length();
+        if (blockSize == 1) {
+            if (cursor.get() >= length) {
+                return -1;
+            }
+            int index = cursor.getAndIncrement();
+            return index < length ? index : -1;
+        }
+
+        Block current = block.get();
+        if (current != null) {
+            int index = current.next.getAndIncrement();
+            if (index < current.end) {
+                return index;
+            }
         }
+        return claim(current);
+    }
 
-        return null;
+    /**
+     * 새 block 을 가져간다. 공유 cursor 가 끝났으면 아직 남은 다른 스레드의 block 에서 index 를 가져간다.
+     */
+    private synchronized int claim(Block finished) {
+        if (finished != null) {
+            blocks.remove(finished);
+        }
+
+        int length = items.length();
+        if (cursor.get() < length) {
+            int start = cursor.getAndAdd(blockSize);
+            Block claimed = new Block(start, Math.min(start + blockSize, length));
+            blocks.add(claimed);
+            block.set(claimed);
+            return claimed.next.getAndIncrement();
+        }
+
+        for (Iterator<Block> iterator = blocks.iterator(); iterator.hasNext(); ) {
+            Block remaining = iterator.next();
+            int index = remaining.next.getAndIncrement();
+            if (index < remaining.end) {
+                block.set(remaining);
+                return index;
+            }
+            iterator.remove();
+        }
+        block.remove();
+        return -1;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T[] newArray(int size) {
+        return (T[]) new Object[size];
+    }
+
+    private static class Block {
+
+        private final AtomicInteger next;
+        private final int end;
+
+        private Block(int start, int end) {
+            this.next = new AtomicInteger(start);
+            this.end = end;
+        }
     }
 }
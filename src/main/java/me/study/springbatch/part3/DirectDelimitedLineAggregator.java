@@ -0,0 +1,110 @@
+package me.study.springbatch.part3;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * DelimitedLineAggregator 와 같은 줄을 만들지만 Object[] 와 필드별 String 을 만들지 않고
+ * int, long, LocalDate, String 값을 StringBuilder 에 바로 이어 쓴다.
+ * quoteCharacter 를 지정하지 않으면 DelimitedLineAggregator 와 글자 단위로 같은 결과를 낸다.
+ */
+public class DirectDelimitedLineAggregator<T> implements AppendingLineAggregator<T> {
+
+    private final String delimiter;
+    private final List<FieldAppender<T>> fields = new ArrayList<>();
+    private Character quoteCharacter;
+
+    public DirectDelimitedLineAggregator(String delimiter) {
+        this.delimiter = delimiter;
+    }
+
+    public DirectDelimitedLineAggregator<T> intField(ToIntFunction<T> value) {
+        fields.add((item, out) -> out.append(value.applyAsInt(item)));
+        return this;
+    }
+
+    public DirectDelimitedLineAggregator<T> longField(ToLongFunction<T> value) {
+        fields.add((item, out) -> out.append(value.applyAsLong(item)));
+        return this;
+    }
+
+    public DirectDelimitedLineAggregator<T> dateField(Function<T, LocalDate> value) {
+        fields.add((item, out) -> appendDate(value.apply(item), out));
+        return this;
+    }
+
+    public DirectDelimitedLineAggregator<T> stringField(Function<T, String> value) {
+        fields.add((item, out) -> appendString(value.apply(item), out));
+        return this;
+    }
+
+    /**
+     * 구분자, 따옴표, 줄바꿈이 들어간 문자열을 quoteCharacter 로 감싸고 안의 따옴표는 두 번 쓴다.
+     */
+    public DirectDelimitedLineAggregator<T> quoteCharacter(char quoteCharacter) {
+        this.quoteCharacter = quoteCharacter;
+        return this;
+    }
+
+    @Override
+    public void append(T item, StringBuilder out) {
+        for (int i = 0; i < fields.size(); i++) {
+            if (i > 0) {
+                out.append(delimiter);
+            }
+            fields.get(i).append(item, out);
+        }
+    }
+
+    private void appendString(String value, StringBuilder out) {
+        if (value == null || quoteCharacter == null || !needsQuote(value)) {
+            out.append(value);
+            return;
+        }
+
+        char quote = quoteCharacter;
+        out.append(quote);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == quote) {
+                out.append(quote);
+            }
+            out.append(c);
+        }
+        out.append(quote);
+    }
+
+    private boolean needsQuote(String value) {
+        return value.contains(delimiter)
+                || value.indexOf(quoteCharacter) >= 0
+                || value.indexOf('\n') >= 0
+                || value.indexOf('\r') >= 0;
+    }
+
+    private static void appendDate(LocalDate date, StringBuilder out) {
+        if (date == null || date.getYear() < 1000 || date.getYear() > 9999) {
+            out.append(date);
+            return;
+        }
+        out.append(date.getYear()).append('-');
+        appendTwoDigits(date.getMonthValue(), out);
+        out.append('-');
+        appendTwoDigits(date.getDayOfMonth(), out);
+    }
+
+    private static void appendTwoDigits(int value, StringBuilder out) {
+        if (value < 10) {
+            out.append('0');
+        }
+        out.append(value);
+    }
+
+    private interface FieldAppender<T> {
+
+        void append(T item, StringBuilder out);
+    }
+}
@@ -2,11 +2,17 @@ package me.study.springbatch.part3;
 
 import org.springframework.batch.item.ItemProcessor;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 
-public class DuplicateValidationProcessor<T> implements ItemProcessor<T, T> {
+/**
+ * key 가 처음 나온 item 을 keyPool 에 기억하고, 같은 key 의 다른 item 은 filter 한다.
+ * 이미 기억한 item 자신은 다시 처리해도 통과시키므로 chunk 처리가 실패해 같은 item 으로 다시 호출돼도 결과가 같다.
+ */
+public class DuplicateValidationProcessor<T> implements ItemProcessor<T, T>, ChunkItemProcessor<T, T> {
 
     private final Map<String, Object> keyPool = new ConcurrentHashMap<>();
     private final Function<T, String> keyExtractor;
@@ -23,12 +29,24 @@ public class DuplicateValidationProcessor<T> implements ItemProcessor<T, T> {
             return item;
         }
 
-        String key = keyExtractor.apply(item);
-        if (keyPool.containsKey(key)) {
-            return null;
+        return register(item) ? item : null;
+    }
+
+    @Override
+    public List<T> process(List<? extends T> items) {
+        if (allowDuplicate) {
+            return new ArrayList<>(items);
         }
 
-        keyPool.put(key, key);
-        return item;
+        List<T> outputs = new ArrayList<>(items.size());
+        for (T item : items) {
+            outputs.add(register(item) ? item : null);
+        }
+        return outputs;
+    }
+
+    private boolean register(T item) {
+        Object registered = keyPool.putIfAbsent(keyExtractor.apply(item), item);
+        return registered == null || registered == item;
     }
 }
@@ -0,0 +1,29 @@
+package me.study.springbatch.part3;
+
+import org.springframework.batch.item.database.ItemSqlParameterSourceProvider;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+
+/**
+ * BeanPropertyItemSqlParameterSourceProvider 대신 GeneratedFieldExtractor 로 미리 정한 파라미터만 꺼내 넘긴다.
+ */
+public class GeneratedItemSqlParameterSourceProvider<T> implements ItemSqlParameterSourceProvider<T> {
+
+    private final String[] names;
+    private final GeneratedFieldExtractor<T> fieldExtractor;
+
+    public GeneratedItemSqlParameterSourceProvider(Class<T> type, String... names) {
+        this.names = names.clone();
+        this.fieldExtractor = GeneratedFieldExtractor.of(type, names);
+    }
+
+    @Override
+    public SqlParameterSource createSqlParameterSource(T item) {
+        Object[] values = fieldExtractor.extract(item);
+        MapSqlParameterSource parameterSource = new MapSqlParameterSource();
+        for (int i = 0; i < names.length; i++) {
+            parameterSource.addValue(names[i], values[i]);
+        }
+        return parameterSource;
+    }
+}
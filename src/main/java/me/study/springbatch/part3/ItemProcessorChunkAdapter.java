@@ -0,0 +1,32 @@
+package me.study.springbatch.part3;
+
+import org.springframework.batch.item.ItemProcessor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 기존 item 단위 ItemProcessor 를 ChunkItemProcessor 로 감싼다.
+ * andThen 으로 chunk 단위 processor 와 이어 붙일 수 있다.
+ */
+public class ItemProcessorChunkAdapter<I, O> implements ChunkItemProcessor<I, O> {
+
+    private final ItemProcessor<? super I, ? extends O> delegate;
+
+    public ItemProcessorChunkAdapter(ItemProcessor<? super I, ? extends O> delegate) {
+        this.delegate = delegate;
+    }
+
+    public static <I, O> ItemProcessorChunkAdapter<I, O> of(ItemProcessor<? super I, ? extends O> delegate) {
+        return new ItemProcessorChunkAdapter<>(delegate);
+    }
+
+    @Override
+    public List<O> process(List<? extends I> items) throws Exception {
+        List<O> outputs = new ArrayList<>(items.size());
+        for (I item : items) {
+            outputs.add(delegate.process(item));
+        }
+        return outputs;
+    }
+}
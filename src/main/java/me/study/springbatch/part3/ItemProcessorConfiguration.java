@@ -37,11 +37,11 @@ public class ItemProcessorConfiguration {
 
     @Bean
     public Step itemProcessorStep() {
-        return stepBuilderFactory.get("itemProcessorStep")
+        return new BatchingStepBuilder<>(stepBuilderFactory.get("itemProcessorStep")
                 .<Person, Person>chunk(10)
                 .reader(itemReader())
-                .processor(itemProcessor())
-                .writer(itemWriter())
+                .writer(itemWriter()))
+                .chunkProcessor(ItemProcessorChunkAdapter.of(itemProcessor()))
                 .build();
     }
 
@@ -30,6 +30,8 @@ import java.util.stream.Collectors;
 @Slf4j
 public class ItemReaderConfiguration {
 
+    private static final int FETCH_SIZE = 1_000;
+
     private final JobBuilderFactory jobBuilderFactory;
     private final StepBuilderFactory stepBuilderFactory;
     private final DataSource dataSource;
@@ -53,6 +55,7 @@ public class ItemReaderConfiguration {
                 .next(csvFileStep())
                 .next(jdbcStep())
                 .next(jpaStep())
+                .next(statelessSessionStep())
                 .build();
     }
 
@@ -92,6 +95,15 @@ public class ItemReaderConfiguration {
                 .build();
     }
 
+    @Bean
+    public Step statelessSessionStep() {
+        return stepBuilderFactory.get("statelessSessionStep")
+                .<Person, Person>chunk(10)
+                .reader(statelessSessionItemReader())
+                .writer(itemWriter())
+                .build();
+    }
+
     private FlatFileItemReader<Person> csvFileItemReader() throws Exception {
         DefaultLineMapper<Person> lineMapper = new DefaultLineMapper<>();
         DelimitedLineTokenizer tokenizer = new DelimitedLineTokenizer();
@@ -119,9 +131,9 @@ public class ItemReaderConfiguration {
     }
 
     private JdbcCursorItemReader<Person> jdbcCursorItemReader() throws Exception {
-        JdbcCursorItemReader<Person> itemReader = new JdbcCursorItemReaderBuilder<Person>()
+        JdbcCursorItemReader<Person> itemReader = CursorFetchMode.STREAMING
+                .configure(new JdbcCursorItemReaderBuilder<Person>(), dataSource, FETCH_SIZE)
                 .name("jdbcCursorItemReader")
-                .dataSource(dataSource)
                 .sql("select id, name, age, address from person")
                 .rowMapper((rs, rowNum) -> new Person(
                         rs.getInt(1), rs.getString(2), rs.getInt(3), rs.getString(4)))
@@ -140,6 +152,11 @@ public class ItemReaderConfiguration {
         return itemReader;
     }
 
+    private StatelessSessionCursorItemReader<Person> statelessSessionItemReader() {
+        return new StatelessSessionCursorItemReader<>(entityManagerFactory, "select p from Person p", Person.class,
+                10, "statelessSessionItemReader");
+    }
+
     private List<Person> getItems() {
         List<Person> items = new ArrayList<>();
 
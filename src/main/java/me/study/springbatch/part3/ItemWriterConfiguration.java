@@ -8,15 +8,10 @@ import org.springframework.batch.core.configuration.annotation.StepBuilderFactor
 import org.springframework.batch.core.launch.support.RunIdIncrementer;
 import org.springframework.batch.item.ItemReader;
 import org.springframework.batch.item.ItemWriter;
-import org.springframework.batch.item.database.BeanPropertyItemSqlParameterSourceProvider;
 import org.springframework.batch.item.database.JdbcBatchItemWriter;
 import org.springframework.batch.item.database.JpaItemWriter;
 import org.springframework.batch.item.database.builder.JdbcBatchItemWriterBuilder;
 import org.springframework.batch.item.database.builder.JpaItemWriterBuilder;
-import org.springframework.batch.item.file.FlatFileItemWriter;
-import org.springframework.batch.item.file.builder.FlatFileItemWriterBuilder;
-import org.springframework.batch.item.file.transform.BeanWrapperFieldExtractor;
-import org.springframework.batch.item.file.transform.DelimitedLineAggregator;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.io.FileSystemResource;
@@ -24,6 +19,7 @@ import org.springframework.core.io.FileSystemResource;
 import javax.persistence.EntityManagerFactory;
 import javax.sql.DataSource;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -31,6 +27,10 @@ import java.util.List;
 @Slf4j
 public class ItemWriterConfiguration {
 
+    private static final int WRITE_BUFFER_SIZE = 1024 * 1024;
+    private static final int MULTI_ROW_INSERT_ROWS = 500;
+    private static final int MULTI_ROW_INSERT_BYTES = 1024 * 1024;
+
     private final JobBuilderFactory jobBuilderFactory;
     private final StepBuilderFactory stepBuilderFactory;
     private final DataSource dataSource;
@@ -51,8 +51,12 @@ public class ItemWriterConfiguration {
         return jobBuilderFactory.get("itemWriterJob")
                 .incrementer(new RunIdIncrementer())
                 .start(csvItemWriterStep())
+                .next(gzipItemWriterStep())
+                .next(columnarItemWriterStep())
                 .next(jdbcBatchItemWriterStep())
+                .next(multiRowInsertItemWriterStep())
                 .next(jpaItemWriterStep())
+                .next(statelessSessionItemWriterStep())
                 .build();
     }
 
@@ -65,6 +69,24 @@ public class ItemWriterConfiguration {
                 .build();
     }
 
+    @Bean
+    public Step gzipItemWriterStep() {
+        return stepBuilderFactory.get("gzipItemWriterStep")
+                .<Person, Person>chunk(100)
+                .reader(itemReader())
+                .writer(gzipFileItemWriter())
+                .build();
+    }
+
+    @Bean
+    public Step columnarItemWriterStep() {
+        return stepBuilderFactory.get("columnarItemWriterStep")
+                .<Person, Person>chunk(100)
+                .reader(itemReader())
+                .writer(columnarFileItemWriter())
+                .build();
+    }
+
     @Bean
     public Step jdbcBatchItemWriterStep() {
         return stepBuilderFactory.get("jdbcBatchItemWriterStep")
@@ -74,6 +96,15 @@ public class ItemWriterConfiguration {
                 .build();
     }
 
+    @Bean
+    public Step multiRowInsertItemWriterStep() {
+        return stepBuilderFactory.get("multiRowInsertItemWriterStep")
+                .<Person, Person>chunk(100)
+                .reader(itemReader())
+                .writer(multiRowInsertItemWriter())
+                .build();
+    }
+
     @Bean
     public Step jpaItemWriterStep() throws Exception {
         return stepBuilderFactory.get("jpaItemWriterStep")
@@ -97,37 +128,70 @@ public class ItemWriterConfiguration {
         return items;
     }
 
-    private ItemWriter<Person> csvFileItemWriter() throws Exception {
-        BeanWrapperFieldExtractor<Person> fieldExtractor = new BeanWrapperFieldExtractor<>();
-        fieldExtractor.setNames(new String[] {"id", "name", "age", "address"});
-
-        DelimitedLineAggregator<Person> lineAggregator = new DelimitedLineAggregator<>();
-        lineAggregator.setDelimiter(",");
-        lineAggregator.setFieldExtractor(fieldExtractor);
-
-        FlatFileItemWriter<Person> csvFileItemWriter = new FlatFileItemWriterBuilder<Person>()
-                .name("csvFileItemWriter")
-                .encoding(StandardCharsets.UTF_8.name())
-                .resource(new FileSystemResource("output/test-output.csv"))
-                .lineAggregator(lineAggregator)
-                .headerCallback(writer -> writer.write("id,이름,나이,거주지"))
-                .footerCallback(writer -> writer.write("---------------\n"))
-                .append(true)
+    @Bean
+    public Step statelessSessionItemWriterStep() {
+        return stepBuilderFactory.get("statelessSessionItemWriterStep")
+                .<Person, Person>chunk(100)
+                .reader(itemReader())
+                .writer(new StatelessSessionItemWriter<>(entityManagerFactory, dataSource, true))
                 .build();
+    }
+
+    private ItemWriter<Person> csvFileItemWriter() throws Exception {
+        DirectDelimitedLineAggregator<Person> lineAggregator = new DirectDelimitedLineAggregator<Person>(",")
+                .intField(Person::getId)
+                .stringField(Person::getName)
+                .intField(Person::getAge)
+                .stringField(Person::getAddress);
+
+        DirectFlatFileItemWriter<Person> csvFileItemWriter = new DirectFlatFileItemWriter<>(lineAggregator);
+        csvFileItemWriter.setName("csvFileItemWriter");
+        csvFileItemWriter.setEncoding(StandardCharsets.UTF_8.name());
+        csvFileItemWriter.setResource(new FileSystemResource("output/test-output.csv"));
+        csvFileItemWriter.setHeaderCallback(writer -> writer.write("id,이름,나이,거주지"));
+        csvFileItemWriter.setFooterCallback(writer -> writer.write("---------------\n"));
+        csvFileItemWriter.setAppendAllowed(true);
         csvFileItemWriter.afterPropertiesSet();
         return csvFileItemWriter;
     }
 
+    private ItemWriter<Person> gzipFileItemWriter() {
+        return new CompressedLineItemWriter<Person>(
+                Paths.get("output", "test-output.csv.gz"),
+                item -> item.getId() + "," + item.getName() + "," + item.getAge() + "," + item.getAddress(),
+                BlockCodec.GZIP,
+                "id,이름,나이,거주지",
+                "---------------",
+                WRITE_BUFFER_SIZE,
+                "gzipFileItemWriter");
+    }
+
+    private ItemWriter<Person> columnarFileItemWriter() {
+        List<ColumnarItemWriter.Column<Person>> columns = new ArrayList<>();
+        columns.add(ColumnarItemWriter.Column.longColumn("id", Person::getId));
+        columns.add(ColumnarItemWriter.Column.stringColumn("name", Person::getName));
+        columns.add(ColumnarItemWriter.Column.longColumn("age", Person::getAge));
+        columns.add(ColumnarItemWriter.Column.stringColumn("address", Person::getAddress));
+
+        return new ColumnarItemWriter<>(Paths.get("output", "test-output.col"), columns, BlockCodec.GZIP_FAST,
+                WRITE_BUFFER_SIZE, "columnarFileItemWriter");
+    }
+
     private ItemWriter<Person> jdbcBatchItemWriter() {
         JdbcBatchItemWriter<Person> itemWriter = new JdbcBatchItemWriterBuilder<Person>()
                 .dataSource(dataSource)
-                .itemSqlParameterSourceProvider(new BeanPropertyItemSqlParameterSourceProvider<>())
+                .itemSqlParameterSourceProvider(new GeneratedItemSqlParameterSourceProvider<>(Person.class, "name", "age", "address"))
                 .sql("insert into person(name, age, address) values(:name, :age, :address)")
                 .build();
         itemWriter.afterPropertiesSet();
         return itemWriter;
     }
 
+    private ItemWriter<Person> multiRowInsertItemWriter() {
+        return new MultiRowInsertItemWriter<>(dataSource, "person", Person.class,
+                MULTI_ROW_INSERT_ROWS, MULTI_ROW_INSERT_BYTES, "name", "age", "address");
+    }
+
     private ItemWriter<Person> jpaItemWriter() throws Exception {
         JpaItemWriter<Person> itemWriter = new JpaItemWriterBuilder<Person>()
                 .entityManagerFactory(entityManagerFactory)
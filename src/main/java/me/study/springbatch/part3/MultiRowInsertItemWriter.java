@@ -0,0 +1,164 @@
+package me.study.springbatch.part3;
+
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.dao.IncorrectUpdateSemanticsDataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 드라이버 옵션(rewriteBatchedStatements 등)에 기대지 않고 insert ... values (...),(...) 문을 직접 만들어 쓰는 writer.
+ * 한 문장에 들어가는 행 수는 maxRows, 파라미터 수 한도, 파라미터 값의 추정 바이트 수(maxStatementBytes)로 나눈다.
+ * 행 수별 SQL 은 캐시하고, 같은 행 수가 이어지면 하나의 PreparedStatement 로 JDBC batch 를 만든다.
+ * JdbcTemplate 으로 chunk 트랜잭션의 커넥션을 쓰므로 chunk 가 롤백되면 함께 롤백된다.
+ */
+public class MultiRowInsertItemWriter<T> implements ItemWriter<T> {
+
+    private static final int MAX_PARAMETERS = 65_535;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String insertPrefix;
+    private final String rowPlaceholders;
+    private final GeneratedFieldExtractor<T> fieldExtractor;
+    private final int maxRows;
+    private final int maxStatementBytes;
+    private final Map<Integer, String> sqlCache = new ConcurrentHashMap<>();
+
+    public MultiRowInsertItemWriter(DataSource dataSource,
+                                    String table,
+                                    Class<T> type,
+                                    int maxRows,
+                                    int maxStatementBytes,
+                                    String... columns) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.insertPrefix = "insert into " + table + "(" + String.join(", ", columns) + ") values ";
+        this.rowPlaceholders = "(" + String.join(", ", Collections.nCopies(columns.length, "?")) + ")";
+        this.fieldExtractor = GeneratedFieldExtractor.of(type, columns);
+        this.maxRows = Math.max(1, Math.min(maxRows, MAX_PARAMETERS / columns.length));
+        this.maxStatementBytes = maxStatementBytes;
+    }
+
+    @Override
+    public void write(List<? extends T> items) {
+        if (items.isEmpty()) {
+            return;
+        }
+
+        List<Object[]> rows = new ArrayList<>(items.size());
+        for (T item : items) {
+            rows.add(fieldExtractor.extract(item));
+        }
+
+        int inserted = jdbcTemplate.execute((ConnectionCallback<Integer>) connection -> insert(connection, rows));
+        if (inserted >= 0 && inserted != rows.size()) {
+            throw new IncorrectUpdateSemanticsDataAccessException(
+                    "Expected " + rows.size() + " rows to be inserted, but " + inserted + " rows were inserted");
+        }
+    }
+
+    /**
+     * 삽입된 행 수를 반환하고, 드라이버가 알려주지 않으면 -1 을 반환한다.
+     */
+    private int insert(Connection connection, List<Object[]> rows) throws SQLException {
+        PreparedStatement statement = null;
+        int statementRows = 0;
+        int inserted = 0;
+
+        try {
+            int start = 0;
+            while (start < rows.size()) {
+                int end = nextEnd(rows, start);
+                int size = end - start;
+
+                if (size != statementRows) {
+                    inserted = add(inserted, execute(statement));
+                    close(statement);
+                    statement = connection.prepareStatement(sql(size));
+                    statementRows = size;
+                }
+
+                int index = 1;
+                for (int i = start; i < end; i++) {
+                    for (Object value : rows.get(i)) {
+                        statement.setObject(index++, value);
+                    }
+                }
+                statement.addBatch();
+                start = end;
+            }
+            return add(inserted, execute(statement));
+        } finally {
+            close(statement);
+        }
+    }
+
+    private int nextEnd(List<Object[]> rows, int start) {
+        int end = start;
+        long bytes = 0;
+        while (end < rows.size() && end - start < maxRows) {
+            long rowBytes = estimateBytes(rows.get(end));
+            if (end > start && bytes + rowBytes > maxStatementBytes) {
+                break;
+            }
+            bytes += rowBytes;
+            end++;
+        }
+        return end;
+    }
+
+    private String sql(int rowCount) {
+        return sqlCache.computeIfAbsent(rowCount, x -> {
+            StringBuilder sql = new StringBuilder(insertPrefix.length() + (rowPlaceholders.length() + 1) * x)
+                    .append(insertPrefix);
+            for (int i = 0; i < x; i++) {
+                if (i > 0) {
+                    sql.append(',');
+                }
+                sql.append(rowPlaceholders);
+            }
+            return sql.toString();
+        });
+    }
+
+    private long estimateBytes(Object[] row) {
+        long bytes = rowPlaceholders.length() + 1;
+        for (Object value : row) {
+            bytes += value instanceof CharSequence ? ((CharSequence) value).length() * 3L : 8;
+        }
+        return bytes;
+    }
+
+    private static int execute(PreparedStatement statement) throws SQLException {
+        if (statement == null) {
+            return 0;
+        }
+        int inserted = 0;
+        for (int count : statement.executeBatch()) {
+            if (count == Statement.SUCCESS_NO_INFO) {
+                return -1;
+            }
+            inserted += count;
+        }
+        return inserted;
+    }
+
+    private static int add(int inserted, int count) {
+        return inserted < 0 || count < 0 ? -1 : inserted + count;
+    }
+
+    private static void close(PreparedStatement statement) throws SQLException {
+        if (statement != null) {
+            statement.close();
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package me.study.springbatch.part3;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.batch.item.ItemProcessor;
 import org.springframework.retry.RetryCallback;
@@ -8,21 +10,38 @@ import org.springframework.retry.RetryListener;
 import org.springframework.retry.support.RetryTemplate;
 import org.springframework.retry.support.RetryTemplateBuilder;
 
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 이름이 있는 item 은 RetryTemplate 을 거치지 않고 바로 반환하고, 이름이 없는 item 만 retry 후 recover 한다.
+ * 처리 결과는 getter 와 Micrometer counter(person.validation, person.validation.retry)로 남긴다.
+ */
 @Slf4j
 public class PersonValidationRetryProcessor implements ItemProcessor<Person, Person> {
 
     private final RetryTemplate retryTemplate;
+    private final SavePersonRetryListener retryListener = new SavePersonRetryListener();
+    private final LongAdder validCount = new LongAdder();
+    private final LongAdder recoveredCount = new LongAdder();
+    private final Counter validCounter = Metrics.counter("person.validation", "result", "valid");
+    private final Counter recoveredCounter = Metrics.counter("person.validation", "result", "recovered");
 
     public PersonValidationRetryProcessor() {
         this.retryTemplate = new RetryTemplateBuilder()
                 .maxAttempts(3)
                 .retryOn(NotFoundNameException.class)
-                .withListener(new SavePersonRetryListener())
+                .withListener(retryListener)
                 .build();
     }
 
     @Override
     public Person process(Person item) {
+        if (item.isNotEmptyName()) {
+            validCount.increment();
+            validCounter.increment();
+            return item;
+        }
+
         return retryTemplate.execute(context -> {
             // RetryCallback
             if (item.isNotEmptyName()) {
@@ -31,11 +50,40 @@ public class PersonValidationRetryProcessor implements ItemProcessor<Person, Per
             throw new NotFoundNameException();
         }, context -> {
             // RecoveryCallback
+            recoveredCount.increment();
+            recoveredCounter.increment();
             return item.unknownName();
         });
     }
 
+    public long getValidCount() {
+        return validCount.sum();
+    }
+
+    public long getRetriedCount() {
+        return retryListener.getRetriedCount();
+    }
+
+    public long getRetryErrorCount() {
+        return retryListener.getErrorCount();
+    }
+
+    public long getRecoveredCount() {
+        return recoveredCount.sum();
+    }
+
+    /**
+     * item 마다 로그를 남기지 않고 횟수를 센 뒤 LOG_SAMPLE_INTERVAL 번째 retry 마다 한 번씩 요약을 남긴다.
+     */
     public static class SavePersonRetryListener implements RetryListener {
+
+        private static final long LOG_SAMPLE_INTERVAL = 1_000;
+
+        private final LongAdder retriedCount = new LongAdder();
+        private final LongAdder errorCount = new LongAdder();
+        private final Counter retriedCounter = Metrics.counter("person.validation.retry", "event", "close");
+        private final Counter errorCounter = Metrics.counter("person.validation.retry", "event", "error");
+
         @Override
         public <T, E extends Throwable> boolean open(RetryContext context, RetryCallback<T, E> callback) {
             return true;
@@ -43,12 +91,27 @@ public class PersonValidationRetryProcessor implements ItemProcessor<Person, Per
 
         @Override
         public <T, E extends Throwable> void close(RetryContext context, RetryCallback<T, E> callback, Throwable throwable) {
-            log.info("close");
+            retriedCount.increment();
+            retriedCounter.increment();
+
+            long retried = retriedCount.sum();
+            if (retried % LOG_SAMPLE_INTERVAL == 1) {
+                log.info("retried: {}, errors: {}", retried, errorCount.sum());
+            }
         }
 
         @Override
         public <T, E extends Throwable> void onError(RetryContext context, RetryCallback<T, E> callback, Throwable throwable) {
-            log.info("onError");
+            errorCount.increment();
+            errorCounter.increment();
+        }
+
+        public long getRetriedCount() {
+            return retriedCount.sum();
+        }
+
+        public long getErrorCount() {
+            return errorCount.sum();
         }
     }
 }
@@ -0,0 +1,50 @@
+package me.study.springbatch.part3;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+
+/**
+ * 스텝의 읽기 처리량(건/초)과 스텝 동안의 최대 heap 사용량을 로그로 남긴다.
+ */
+@Slf4j
+public class ReaderBenchmarkListener implements StepExecutionListener {
+
+    private long startNanos;
+
+    @Override
+    public void beforeStep(StepExecution stepExecution) {
+        System.gc();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+        startNanos = System.nanoTime();
+    }
+
+    @Override
+    public ExitStatus afterStep(StepExecution stepExecution) {
+        long elapsedNanos = System.nanoTime() - startNanos;
+        long peakHeap = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peakHeap += pool.getPeakUsage().getUsed();
+            }
+        }
+
+        int readCount = stepExecution.getReadCount();
+        log.info("{}: {} rows in {} ms, {} rows/s, peak heap {} MB",
+                stepExecution.getStepName(),
+                readCount,
+                elapsedNanos / 1_000_000,
+                elapsedNanos == 0 ? 0 : readCount * 1_000_000_000L / elapsedNanos,
+                peakHeap / (1024 * 1024));
+        return null;
+    }
+}
@@ -16,9 +16,7 @@ import org.springframework.batch.item.file.FlatFileItemReader;
 import org.springframework.batch.item.file.builder.FlatFileItemReaderBuilder;
 import org.springframework.batch.item.file.mapping.DefaultLineMapper;
 import org.springframework.batch.item.file.transform.DelimitedLineTokenizer;
-import org.springframework.batch.item.support.CompositeItemProcessor;
 import org.springframework.batch.item.support.CompositeItemWriter;
-import org.springframework.batch.item.support.builder.CompositeItemProcessorBuilder;
 import org.springframework.batch.item.support.builder.CompositeItemWriterBuilder;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
@@ -57,13 +55,12 @@ public class SavePersonConfiguration {
     @Bean
     @JobScope
     public Step savePersonStep(@Value("#{jobParameters[allow_duplicate]}") String allowDuplicate) throws Exception {
-        return stepBuilderFactory.get("savePersonStep")
+        return new BatchingStepBuilder<>(stepBuilderFactory.get("savePersonStep")
                 .<Person, Person>chunk(10)
                 .reader(itemReader())
-                .processor(itemProcessor(Boolean.parseBoolean(allowDuplicate)))
                 .writer(itemWriter())
-                .listener(new SavePersonListener.SavePersonStepExecutionListener())
-                .faultTolerant()
+                .listener(new SavePersonListener.SavePersonStepExecutionListener()))
+                .chunkProcessor(itemProcessor(Boolean.parseBoolean(allowDuplicate)))
                 .skip(NotFoundNameException.class)
                 .skipLimit(3)
                 .build();
@@ -91,7 +88,7 @@ public class SavePersonConfiguration {
         return itemReader;
     }
 
-    private ItemProcessor<Person, Person> itemProcessor(boolean allowDuplicate) throws Exception {
+    private ChunkItemProcessor<Person, Person> itemProcessor(boolean allowDuplicate) {
         ItemProcessor<Person, Person> validationProcessor = item -> {
             if (item.isNotEmptyName()) {
                 return item;
@@ -102,11 +99,9 @@ public class SavePersonConfiguration {
         DuplicateValidationProcessor<Person> duplicateValidationProcessor =
                 new DuplicateValidationProcessor<>(Person::getName, allowDuplicate);
 
-        CompositeItemProcessor<Person, Person> itemProcessor = new CompositeItemProcessorBuilder<Person, Person>()
-                .delegates(new PersonValidationRetryProcessor(), validationProcessor, duplicateValidationProcessor)
-                .build();
-        itemProcessor.afterPropertiesSet();
-        return itemProcessor;
+        return ItemProcessorChunkAdapter.of(new PersonValidationRetryProcessor())
+                .andThen(ItemProcessorChunkAdapter.of(validationProcessor))
+                .andThen(duplicateValidationProcessor);
     }
 
     private ItemWriter<Person> itemWriter() throws Exception {
@@ -0,0 +1,70 @@
+package me.study.springbatch.part3;
+
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.query.Query;
+import org.springframework.batch.item.support.AbstractItemCountingItemStreamItemReader;
+
+import javax.persistence.EntityManagerFactory;
+
+/**
+ * JpaCursorItemReader 대신 Hibernate StatelessSession 의 forward-only scroll 로 읽는 reader.
+ * 1차 캐시와 dirty checking 스냅샷이 없으므로 읽은 엔티티가 세션에 쌓이지 않는다.
+ * StatelessSession 은 컬렉션을 지연 로딩할 수 없으므로 컬렉션이 필요하면 루트 id 로 정렬한 join fetch 쿼리를 쓴다.
+ */
+public class StatelessSessionCursorItemReader<T> extends AbstractItemCountingItemStreamItemReader<T> {
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final String queryString;
+    private final Class<T> type;
+    private final int fetchSize;
+
+    private StatelessSession session;
+    private ScrollableResults results;
+
+    public StatelessSessionCursorItemReader(EntityManagerFactory entityManagerFactory,
+                                            String queryString,
+                                            Class<T> type,
+                                            int fetchSize,
+                                            String name) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.queryString = queryString;
+        this.type = type;
+        this.fetchSize = fetchSize;
+        setName(name);
+    }
+
+    @Override
+    protected void doOpen() {
+        session = entityManagerFactory.unwrap(SessionFactory.class).openStatelessSession();
+        Query<T> query = session.createQuery(queryString, type);
+        query.setFetchSize(fetchSize);
+        query.setReadOnly(true);
+        results = query.scroll(ScrollMode.FORWARD_ONLY);
+    }
+
+    @Override
+    protected T doRead() {
+        if (!results.next()) {
+            return null;
+        }
+        return type.cast(results.get(0));
+    }
+
+    @Override
+    protected void doClose() {
+        try {
+            if (results != null) {
+                results.close();
+            }
+        } finally {
+            results = null;
+            if (session != null) {
+                session.close();
+                session = null;
+            }
+        }
+    }
+}
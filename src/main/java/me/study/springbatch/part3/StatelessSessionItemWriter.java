@@ -0,0 +1,47 @@
+package me.study.springbatch.part3;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.util.List;
+
+/**
+ * JpaItemWriter 대신 Hibernate StatelessSession 으로 insert(usePersist) 또는 update 를 바로 실행하는 writer.
+ * chunk 트랜잭션의 JDBC 커넥션 위에서 세션을 열기 때문에 chunk 가 롤백되면 함께 롤백된다.
+ * cascade 는 적용되지 않으므로 연관 엔티티는 따로 저장해야 한다.
+ */
+public class StatelessSessionItemWriter<T> implements ItemWriter<T> {
+
+    private final SessionFactory sessionFactory;
+    private final DataSource dataSource;
+    private final boolean usePersist;
+
+    public StatelessSessionItemWriter(EntityManagerFactory entityManagerFactory, DataSource dataSource, boolean usePersist) {
+        this.sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+        this.dataSource = dataSource;
+        this.usePersist = usePersist;
+    }
+
+    @Override
+    public void write(List<? extends T> items) {
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+        StatelessSession session = sessionFactory.openStatelessSession(connection);
+        try {
+            for (T item : items) {
+                if (usePersist) {
+                    session.insert(item);
+                } else {
+                    session.update(item);
+                }
+            }
+        } finally {
+            session.close();
+            DataSourceUtils.releaseConnection(connection, dataSource);
+        }
+    }
+}
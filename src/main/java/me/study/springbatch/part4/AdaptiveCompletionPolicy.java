@@ -0,0 +1,113 @@
+package me.study.springbatch.part4;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.ChunkListener;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStream;
+import org.springframework.batch.repeat.RepeatContext;
+import org.springframework.batch.repeat.context.RepeatContextSupport;
+import org.springframework.batch.repeat.policy.CompletionPolicySupport;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 커밋 시간이 목표 시간에 가까워지도록 chunk 크기를 실행 중에 조절한다.
+ * 빠르게 커밋되면 늘리고, 느린 커밋이나 롤백이 발생하면 줄인다.
+ * 스텝에 chunk(policy), listener(policy), stream(policy) 로 함께 등록해야 한다.
+ */
+@Slf4j
+public class AdaptiveCompletionPolicy extends CompletionPolicySupport implements ChunkListener, ItemStream {
+
+    public static final String CHUNK_SIZE_KEY = "adaptiveCompletionPolicy.chunkSize";
+
+    private final int minChunkSize;
+    private final int maxChunkSize;
+    private final long targetNanos;
+    private final AtomicInteger chunkSize;
+    private final ThreadLocal<Long> chunkStartTime = new ThreadLocal<>();
+
+    public AdaptiveCompletionPolicy(int initialChunkSize, int minChunkSize, int maxChunkSize, long targetMillis) {
+        if (minChunkSize < 1 || minChunkSize > maxChunkSize) {
+            throw new IllegalArgumentException("chunk size bounds must satisfy 1 <= min <= max");
+        }
+        this.minChunkSize = minChunkSize;
+        this.maxChunkSize = maxChunkSize;
+        this.targetNanos = TimeUnit.MILLISECONDS.toNanos(targetMillis);
+        this.chunkSize = new AtomicInteger(bound(initialChunkSize));
+    }
+
+    public int getChunkSize() {
+        return chunkSize.get();
+    }
+
+    @Override
+    public RepeatContext start(RepeatContext parent) {
+        return new AdaptiveRepeatContext(parent, chunkSize.get());
+    }
+
+    @Override
+    public boolean isComplete(RepeatContext context) {
+        AdaptiveRepeatContext repeatContext = (AdaptiveRepeatContext) context;
+        return repeatContext.getStartedCount() >= repeatContext.limit;
+    }
+
+    @Override
+    public void beforeChunk(ChunkContext context) {
+        chunkStartTime.set(System.nanoTime());
+    }
+
+    @Override
+    public void afterChunk(ChunkContext context) {
+        Long startTime = chunkStartTime.get();
+        chunkStartTime.remove();
+        if (startTime == null) {
+            return;
+        }
+
+        long elapsed = Math.max(1, System.nanoTime() - startTime);
+        chunkSize.updateAndGet(size -> {
+            // 한 번에 2배 이상 바뀌지 않도록 제한해 일시적인 지연에 과민하게 반응하지 않게 한다.
+            double ratio = Math.max(0.5, Math.min(2.0, (double) targetNanos / elapsed));
+            return bound((int) Math.round(size * ratio));
+        });
+    }
+
+    @Override
+    public void afterChunkError(ChunkContext context) {
+        chunkStartTime.remove();
+        int size = chunkSize.updateAndGet(x -> bound(x / 2));
+        log.info("chunk rollback, chunk size shrinks to {}", size);
+    }
+
+    @Override
+    public void open(ExecutionContext executionContext) {
+        if (executionContext.containsKey(CHUNK_SIZE_KEY)) {
+            chunkSize.set(bound(executionContext.getInt(CHUNK_SIZE_KEY)));
+        }
+    }
+
+    @Override
+    public void update(ExecutionContext executionContext) {
+        executionContext.putInt(CHUNK_SIZE_KEY, chunkSize.get());
+    }
+
+    @Override
+    public void close() {
+    }
+
+    private int bound(int size) {
+        return Math.max(minChunkSize, Math.min(maxChunkSize, size));
+    }
+
+    private static class AdaptiveRepeatContext extends RepeatContextSupport {
+
+        private final int limit;
+
+        private AdaptiveRepeatContext(RepeatContext parent, int limit) {
+            super(parent);
+            this.limit = limit;
+        }
+    }
+}
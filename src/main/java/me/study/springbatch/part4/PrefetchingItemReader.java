@@ -0,0 +1,168 @@
+package me.study.springbatch.part4;
+
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.scope.context.StepContext;
+import org.springframework.batch.core.scope.context.StepSynchronizationManager;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ItemStreamReader;
+import org.springframework.batch.item.support.AbstractItemCountingItemStreamItemReader;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 현재 페이지를 처리하는 동안 별도 스레드에서 다음 페이지를 미리 읽어 둔다.
+ * 재시작 정보는 delegate 가 앞서 읽은 위치가 아니라 실제로 소비된 건수(read.count)로 저장한다.
+ * delegate 는 chunk 를 처리하는 스레드와 동시에 읽으므로 chunk 트랜잭션과 영속성 컨텍스트를 공유하면 안 된다.
+ * JpaPagingItemReader 는 transacted(false) 로 만들어 페이지마다 flush/clear 하지 않고 detach 된 entity 를 돌려주게 한다.
+ */
+public class PrefetchingItemReader<T> implements ItemStreamReader<T> {
+
+    private static final String READ_COUNT = "read.count";
+    private static final long SHUTDOWN_TIMEOUT_MILLIS = 10_000;
+
+    private final AbstractItemCountingItemStreamItemReader<T> delegate;
+    private final int pageSize;
+    private final int prefetchDepth;
+
+    private BlockingQueue<Page<T>> pages;
+    private Iterator<T> current = Collections.emptyIterator();
+    private Thread prefetchThread;
+    private volatile boolean running;
+    private boolean finished;
+    private int readCount;
+
+    public PrefetchingItemReader(AbstractItemCountingItemStreamItemReader<T> delegate, int pageSize, int prefetchDepth) {
+        if (pageSize < 1 || prefetchDepth < 1) {
+            throw new IllegalArgumentException("pageSize and prefetchDepth must be positive");
+        }
+        this.delegate = delegate;
+        this.pageSize = pageSize;
+        this.prefetchDepth = prefetchDepth;
+    }
+
+    @Override
+    public synchronized T read() throws Exception {
+        while (!current.hasNext()) {
+            if (finished) {
+                return null;
+            }
+
+            Page<T> page = pages.take();
+            if (page.error != null) {
+                finished = true;
+                if (page.error instanceof Exception) {
+                    throw (Exception) page.error;
+                }
+                throw (Error) page.error;
+            }
+
+            finished = page.last;
+            current = page.items.iterator();
+        }
+
+        readCount++;
+        return current.next();
+    }
+
+    @Override
+    public synchronized void open(ExecutionContext executionContext) throws ItemStreamException {
+        delegate.open(executionContext);
+        readCount = executionContext.getInt(delegate.getExecutionContextKey(READ_COUNT), 0);
+        pages = new ArrayBlockingQueue<>(prefetchDepth);
+        current = Collections.emptyIterator();
+        finished = false;
+        running = true;
+
+        StepExecution stepExecution = getStepExecution();
+        prefetchThread = new Thread(() -> prefetch(stepExecution), Thread.currentThread().getName() + "-prefetch");
+        prefetchThread.setDaemon(true);
+        prefetchThread.start();
+    }
+
+    @Override
+    public synchronized void update(ExecutionContext executionContext) throws ItemStreamException {
+        // delegate 는 이미 다음 페이지까지 읽었을 수 있으므로 delegate.update 대신 소비한 건수만 기록한다.
+        if (delegate.isSaveState()) {
+            executionContext.putInt(delegate.getExecutionContextKey(READ_COUNT), readCount);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws ItemStreamException {
+        running = false;
+        if (prefetchThread != null) {
+            try {
+                pages.clear();
+                prefetchThread.join(SHUTDOWN_TIMEOUT_MILLIS);
+                if (prefetchThread.isAlive()) {
+                    prefetchThread.interrupt();
+                    prefetchThread.join(TimeUnit.SECONDS.toMillis(1));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                prefetchThread = null;
+            }
+        }
+        current = Collections.emptyIterator();
+        delegate.close();
+    }
+
+    private void prefetch(StepExecution stepExecution) {
+        if (stepExecution != null) {
+            StepSynchronizationManager.register(stepExecution);
+        }
+        try {
+            boolean last = false;
+            while (running && !last) {
+                List<T> items = new ArrayList<>(pageSize);
+                T item;
+                while (items.size() < pageSize && (item = delegate.read()) != null) {
+                    items.add(item);
+                }
+                last = items.size() < pageSize;
+                pages.put(new Page<>(items, last, null));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Throwable e) {
+            try {
+                pages.put(new Page<>(Collections.emptyList(), true, e));
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+        } finally {
+            if (stepExecution != null) {
+                StepSynchronizationManager.close();
+            }
+        }
+    }
+
+    private StepExecution getStepExecution() {
+        StepContext context = StepSynchronizationManager.getContext();
+        if (context == null) {
+            return null;
+        }
+        return context.getStepExecution();
+    }
+
+    private static class Page<T> {
+
+        private final List<T> items;
+        private final boolean last;
+        private final Throwable error;
+
+        private Page(List<T> items, boolean last, Throwable error) {
+            this.items = items;
+            this.last = last;
+            this.error = error;
+        }
+    }
+}
@@ -54,9 +54,9 @@ public class User {
         updatedDate = LocalDate.now();
     }
 
-    private int getTotalAmount() {
+    private long getTotalAmount() {
         return orders.stream()
-                .mapToInt(Orders::getAmount)
+                .mapToLong(Orders::getAmount)
                 .sum();
     }
 
@@ -74,14 +74,14 @@ public class User {
             this.nextLevel = nextLevel;
         }
 
-        private boolean availableLevelUp(int totalAmount) {
+        public boolean availableLevelUp(long totalAmount) {
             if (Objects.isNull(nextLevel)) {
                 return false;
             }
             return totalAmount >= nextAmount;
         }
 
-        private Level getNextLevel(int totalAmount) {
+        public Level getNextLevel(long totalAmount) {
             if (totalAmount >= Level.VIP.nextAmount) {
                 return VIP;
             }
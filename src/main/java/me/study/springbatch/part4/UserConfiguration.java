@@ -1,8 +1,19 @@
 package me.study.springbatch.part4;
 
 import lombok.extern.slf4j.Slf4j;
+import me.study.springbatch.part3.BlockCodec;
+import me.study.springbatch.part3.ColumnarItemWriter;
+import me.study.springbatch.part3.CompressedLineItemWriter;
+import me.study.springbatch.part3.DirectFlatFileItemWriter;
+import me.study.springbatch.part3.StatelessSessionCursorItemReader;
+import me.study.springbatch.part3.StatelessSessionItemWriter;
+import me.study.springbatch.part5.DailyOrderRollupTasklet;
+import me.study.springbatch.part5.HyperLogLog;
 import me.study.springbatch.part5.JobParametersDecider;
 import me.study.springbatch.part5.OrderStatistics;
+import me.study.springbatch.part5.OrderStatisticsAggregatingItemReader;
+import me.study.springbatch.part5.OrderStatisticsFingerprintDecider;
+import me.study.springbatch.part5.OrderStatisticsLineAggregator;
 import org.springframework.batch.core.Job;
 import org.springframework.batch.core.Step;
 import org.springframework.batch.core.configuration.annotation.JobBuilderFactory;
@@ -17,10 +28,6 @@ import org.springframework.batch.item.database.JpaPagingItemReader;
 import org.springframework.batch.item.database.Order;
 import org.springframework.batch.item.database.builder.JdbcPagingItemReaderBuilder;
 import org.springframework.batch.item.database.builder.JpaPagingItemReaderBuilder;
-import org.springframework.batch.item.file.FlatFileItemWriter;
-import org.springframework.batch.item.file.builder.FlatFileItemWriterBuilder;
-import org.springframework.batch.item.file.transform.BeanWrapperFieldExtractor;
-import org.springframework.batch.item.file.transform.DelimitedLineAggregator;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -29,10 +36,13 @@ import org.springframework.core.io.FileSystemResource;
 import javax.persistence.EntityManagerFactory;
 import javax.sql.DataSource;
 import java.nio.charset.StandardCharsets;
-import java.time.LocalDate;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
 import java.time.YearMonth;
-import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @Configuration
@@ -41,12 +51,22 @@ public class UserConfiguration {
 
     private static final String JOB_NAME = "userJob";
     private static final int CHUNK = 1_000;
+    private static final int PREFETCH_DEPTH = 2;
+    private static final int FETCH_SIZE = 10_000;
+    private static final double BUYER_SKETCH_ERROR = 0.01;
+    private static final Duration ORDER_COMMIT_GRACE = Duration.ofMinutes(5);
+    private static final String STREAM_STATISTICS_MODE = "stream";
+    private static final String GZIP_OUTPUT_FORMAT = "gzip";
+    private static final String COLUMNAR_OUTPUT_FORMAT = "columnar";
+    private static final String STATELESS_PERSISTENCE_MODE = "stateless";
+    private static final int WRITE_BUFFER_SIZE = 1024 * 1024;
 
     private final JobBuilderFactory jobBuilderFactory;
     private final StepBuilderFactory stepBuilderFactory;
     private final UserRepository userRepository;
     private final EntityManagerFactory entityManagerFactory;
     private final DataSource dataSource;
+    private final OrderStatisticsFingerprintDecider fingerprintDecider;
 
     public UserConfiguration(JobBuilderFactory jobBuilderFactory,
                              StepBuilderFactory stepBuilderFactory,
@@ -58,6 +78,9 @@ public class UserConfiguration {
         this.userRepository = userRepository;
         this.entityManagerFactory = entityManagerFactory;
         this.dataSource = dataSource;
+        this.fingerprintDecider = new OrderStatisticsFingerprintDecider(dataSource,
+                jobParameters -> orderStatisticsPath(YearMonth.parse(jobParameters.getString("date")),
+                        jobParameters.getString("output_format")));
     }
 
     @Bean(JOB_NAME)
@@ -65,11 +88,17 @@ public class UserConfiguration {
         return jobBuilderFactory.get(JOB_NAME)
                 .incrementer(new RunIdIncrementer())
                 .start(saveUserStep())
-                .next(userLevelUpStep())
+                .next(userLevelUpStep(null))
                 .listener(new LevelUpJobExecutionListener(userRepository))
                 .next(new JobParametersDecider("date"))
                 .on(JobParametersDecider.CONTINUE.getName())
-                .to(orderStatisticsStep(null))
+                .to(orderRollupStep())
+                .next(fingerprintDecider)
+                .on(OrderStatisticsFingerprintDecider.UNCHANGED.getName())
+                .end(OrderStatisticsFingerprintDecider.UNCHANGED.getName())
+                .from(fingerprintDecider)
+                .on("*")
+                .to(orderStatisticsStep(null, null, null))
                 .build()
                 .build();
     }
@@ -82,22 +111,43 @@ public class UserConfiguration {
     }
 
     @Bean(JOB_NAME + "_userLevelUpStep")
-    public Step userLevelUpStep() throws Exception {
+    @JobScope
+    public Step userLevelUpStep(@Value("#{jobParameters[persistence_mode]}") String persistenceMode) throws Exception {
+        AdaptiveCompletionPolicy completionPolicy = new AdaptiveCompletionPolicy(CHUNK, 100, 10_000, 1_000);
+        boolean stateless = STATELESS_PERSISTENCE_MODE.equals(persistenceMode);
+
         return stepBuilderFactory.get(JOB_NAME + "_userLevelUpStep")
-                .<User, User>chunk(CHUNK)
-                .reader(itemReader())
+                .<User, User>chunk(completionPolicy)
+                .reader(stateless ? statelessItemReader() : itemReader())
                 .processor(itemProcessor())
-                .writer(itemWriter())
+                .writer(stateless ? statelessItemWriter() : itemWriter())
+                .listener(completionPolicy)
+                .stream(completionPolicy)
+                .build();
+    }
+
+    @Bean(JOB_NAME + "_orderRollupStep")
+    public Step orderRollupStep() {
+        return stepBuilderFactory.get(JOB_NAME + "_orderRollupStep")
+                .tasklet(new DailyOrderRollupTasklet(dataSource, BUYER_SKETCH_ERROR, ORDER_COMMIT_GRACE))
                 .build();
     }
 
     @Bean(JOB_NAME + "orderStatisticsStep")
     @JobScope
-    public Step orderStatisticsStep(@Value("#{jobParameters[date]}") String date) throws Exception {
+    public Step orderStatisticsStep(@Value("#{jobParameters[date]}") String date,
+                                    @Value("#{jobParameters[statistics_mode]}") String statisticsMode,
+                                    @Value("#{jobParameters[output_format]}") String outputFormat) throws Exception {
+        boolean streamMode = STREAM_STATISTICS_MODE.equals(statisticsMode);
+        ItemReader<OrderStatistics> itemReader = streamMode
+                ? orderStatisticsAggregatingItemReader(date)
+                : orderStatisticsItemReader(date);
+
         return stepBuilderFactory.get(JOB_NAME + "orderStatisticsStep")
                 .<OrderStatistics, OrderStatistics>chunk(100)
-                .reader(orderStatisticsItemReader(date))
-                .writer(orderStatisticsItemWriter(date))
+                .reader(itemReader)
+                .writer(orderStatisticsItemWriter(date, outputFormat, streamMode))
+                .listener(fingerprintDecider)
                 .build();
     }
 
@@ -106,10 +156,17 @@ public class UserConfiguration {
                 .queryString("select u from User u")
                 .entityManagerFactory(entityManagerFactory)
                 .pageSize(CHUNK)
+                .transacted(false)
                 .name(JOB_NAME + "_userItemReader")
                 .build();
         itemReader.afterPropertiesSet();
-        return itemReader;
+        return new PrefetchingItemReader<>(itemReader, CHUNK, PREFETCH_DEPTH);
+    }
+
+    private ItemReader<User> statelessItemReader() {
+        return new StatelessSessionCursorItemReader<>(entityManagerFactory,
+                "select u from User u left join fetch u.orders order by u.id", User.class,
+                CHUNK, JOB_NAME + "_statelessUserItemReader");
     }
 
     private ItemProcessor<User, User> itemProcessor() {
@@ -128,6 +185,14 @@ public class UserConfiguration {
         });
     }
 
+    private ItemWriter<User> statelessItemWriter() {
+        StatelessSessionItemWriter<User> itemWriter = new StatelessSessionItemWriter<>(entityManagerFactory, dataSource, false);
+        return users -> {
+            users.forEach(User::levelUp);
+            itemWriter.write(users);
+        };
+    }
+
     private ItemReader<OrderStatistics> orderStatisticsItemReader(String date) throws Exception {
         YearMonth yearMonth = YearMonth.parse(date);
 
@@ -141,42 +206,74 @@ public class UserConfiguration {
         JdbcPagingItemReader<OrderStatistics> itemReader = new JdbcPagingItemReaderBuilder<OrderStatistics>()
                 .dataSource(dataSource)
                 .rowMapper((rs, rowNum) -> OrderStatistics.builder()
-                        .amount(rs.getString(1))
-                        .date(LocalDate.parse(rs.getString(2), DateTimeFormatter.ISO_DATE))
+                        .amount(rs.getLong(1))
+                        .date(rs.getDate(2).toLocalDate())
+                        .uniqueBuyers(rs.getBytes(3) == null ? 0 : HyperLogLog.fromBytes(rs.getBytes(3)).estimate())
                         .build()
                 )
                 .pageSize(CHUNK)
                 .name(JOB_NAME + "_orderStatisticsItemReader")
-                .selectClause("sum(amount), created_date")
-                .fromClause("orders")
+                .selectClause("total_amount, created_date, buyer_sketch")
+                .fromClause("daily_order_rollup")
                 .whereClause("created_date >= :startDate and created_date <= :endDate")
-                .groupClause("created_date")
                 .parameterValues(parameters)
                 .sortKeys(sortKey)
                 .build();
         itemReader.afterPropertiesSet();
-        return itemReader;
+        return new PrefetchingItemReader<>(itemReader, CHUNK, PREFETCH_DEPTH);
     }
 
-    private ItemWriter<OrderStatistics> orderStatisticsItemWriter(String date) throws Exception {
-        YearMonth yearMonth = YearMonth.parse(date);
-        String fileName = yearMonth.getYear() + "년_" + yearMonth.getMonthValue() + "월_일별_주문_금액.csv";
+    private ItemReader<OrderStatistics> orderStatisticsAggregatingItemReader(String date) {
+        return new OrderStatisticsAggregatingItemReader(dataSource, YearMonth.parse(date), FETCH_SIZE,
+                BUYER_SKETCH_ERROR, JOB_NAME + "_orderStatisticsAggregatingItemReader");
+    }
 
-        BeanWrapperFieldExtractor<OrderStatistics> fieldExtractor = new BeanWrapperFieldExtractor<>();
-        fieldExtractor.setNames(new String[]{"amount", "date"});
+    private ItemWriter<OrderStatistics> orderStatisticsItemWriter(String date,
+                                                                  String outputFormat,
+                                                                  boolean withDistribution) throws Exception {
+        Path path = orderStatisticsPath(YearMonth.parse(date), outputFormat);
+        OrderStatisticsLineAggregator lineAggregator = new OrderStatisticsLineAggregator(true, withDistribution);
 
-        DelimitedLineAggregator<OrderStatistics> lineAggregator = new DelimitedLineAggregator<>();
-        lineAggregator.setDelimiter(",");
-        lineAggregator.setFieldExtractor(fieldExtractor);
+        if (GZIP_OUTPUT_FORMAT.equals(outputFormat)) {
+            return new CompressedLineItemWriter<>(path, lineAggregator, BlockCodec.GZIP, lineAggregator.getHeader(),
+                    null, WRITE_BUFFER_SIZE, JOB_NAME + "_gzipFileItemWriter");
+        }
+        if (COLUMNAR_OUTPUT_FORMAT.equals(outputFormat)) {
+            return new ColumnarItemWriter<>(path, orderStatisticsColumns(withDistribution), BlockCodec.GZIP_FAST,
+                    WRITE_BUFFER_SIZE, JOB_NAME + "_columnarFileItemWriter");
+        }
 
-        FlatFileItemWriter<OrderStatistics> itemWriter = new FlatFileItemWriterBuilder<OrderStatistics>()
-                .name(JOB_NAME + "_csvFileItemWriter")
-                .encoding(StandardCharsets.UTF_8.name())
-                .resource(new FileSystemResource("output/" + fileName))
-                .lineAggregator(lineAggregator)
-                .headerCallback(writer -> writer.write("total_amount,date"))
-                .build();
+        DirectFlatFileItemWriter<OrderStatistics> itemWriter = new DirectFlatFileItemWriter<>(lineAggregator);
+        itemWriter.setName(JOB_NAME + "_csvFileItemWriter");
+        itemWriter.setEncoding(StandardCharsets.UTF_8.name());
+        itemWriter.setResource(new FileSystemResource(path.toFile()));
+        itemWriter.setHeaderCallback(writer -> writer.write(lineAggregator.getHeader()));
         itemWriter.afterPropertiesSet();
         return itemWriter;
     }
+
+    private List<ColumnarItemWriter.Column<OrderStatistics>> orderStatisticsColumns(boolean withDistribution) {
+        List<ColumnarItemWriter.Column<OrderStatistics>> columns = new ArrayList<>();
+        columns.add(ColumnarItemWriter.Column.longColumn("total_amount", OrderStatistics::getAmount));
+        columns.add(ColumnarItemWriter.Column.dateColumn("date", OrderStatistics::getDate));
+        columns.add(ColumnarItemWriter.Column.longColumn("unique_buyers", OrderStatistics::getUniqueBuyers));
+        if (withDistribution) {
+            columns.add(ColumnarItemWriter.Column.longColumn("order_count", OrderStatistics::getCount));
+            columns.add(ColumnarItemWriter.Column.longColumn("p50_amount", OrderStatistics::getP50));
+            columns.add(ColumnarItemWriter.Column.longColumn("p90_amount", OrderStatistics::getP90));
+            columns.add(ColumnarItemWriter.Column.longColumn("p99_amount", OrderStatistics::getP99));
+        }
+        return columns;
+    }
+
+    private static Path orderStatisticsPath(YearMonth yearMonth, String outputFormat) {
+        String fileName = yearMonth.getYear() + "년_" + yearMonth.getMonthValue() + "월_일별_주문_금액";
+        if (GZIP_OUTPUT_FORMAT.equals(outputFormat)) {
+            return Paths.get("output", fileName + ".csv.gz");
+        }
+        if (COLUMNAR_OUTPUT_FORMAT.equals(outputFormat)) {
+            return Paths.get("output", fileName + ".col");
+        }
+        return Paths.get("output", fileName + ".csv");
+    }
 }
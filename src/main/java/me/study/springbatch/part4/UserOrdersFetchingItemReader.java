@@ -0,0 +1,118 @@
+package me.study.springbatch.part4;
+
+import org.springframework.batch.item.support.AbstractItemCountingItemStreamItemReader;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * User 를 페이지 단위로 읽을 때 User.orders(EAGER) 때문에 사용자마다 주문 조회가 한 번씩 나가는 N+1 을 없앤다.
+ * 페이지마다 id 만 keyset 으로 조회한 뒤 해당 id 들의 User 와 주문을 join fetch 로 한 번에 읽으므로
+ * 페이지당 쿼리는 2번이다. minId, maxId 로 파티션 범위를 제한할 수 있다.
+ */
+public class UserOrdersFetchingItemReader extends AbstractItemCountingItemStreamItemReader<User> {
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final long minId;
+    private final long maxId;
+    private final int pageSize;
+
+    private EntityManager entityManager;
+    private List<User> page = Collections.emptyList();
+    private int index;
+    private long lastId;
+    private boolean last;
+
+    public UserOrdersFetchingItemReader(EntityManagerFactory entityManagerFactory,
+                                        Long minId,
+                                        Long maxId,
+                                        int pageSize,
+                                        String name) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.minId = minId == null ? Long.MIN_VALUE : minId;
+        this.maxId = maxId == null ? Long.MAX_VALUE : maxId;
+        this.pageSize = pageSize;
+        setName(name);
+    }
+
+    @Override
+    protected void doOpen() {
+        entityManager = entityManagerFactory.createEntityManager();
+        page = Collections.emptyList();
+        index = 0;
+        lastId = minId == Long.MIN_VALUE ? minId : minId - 1;
+        last = false;
+    }
+
+    @Override
+    protected User doRead() {
+        if (index >= page.size()) {
+            if (last) {
+                return null;
+            }
+            fetchPage();
+            if (page.isEmpty()) {
+                return null;
+            }
+        }
+
+        User user = page.get(index++);
+        lastId = user.getId();
+        return user;
+    }
+
+    /**
+     * 재시작 시 건너뛸 건수만큼 다시 읽지 않고 itemIndex 번째 id 를 찾아 그 다음부터 읽는다.
+     */
+    @Override
+    protected void jumpToItem(int itemIndex) {
+        if (itemIndex == 0) {
+            return;
+        }
+        List<Long> ids = entityManager
+                .createQuery("select u.id from User u where u.id > :lastId and u.id <= :maxId order by u.id", Long.class)
+                .setParameter("lastId", lastId)
+                .setParameter("maxId", maxId)
+                .setFirstResult(itemIndex - 1)
+                .setMaxResults(1)
+                .getResultList();
+        if (ids.isEmpty()) {
+            last = true;
+        } else {
+            lastId = ids.get(0);
+        }
+    }
+
+    @Override
+    protected void doClose() {
+        page = Collections.emptyList();
+        if (entityManager != null) {
+            entityManager.close();
+            entityManager = null;
+        }
+    }
+
+    private void fetchPage() {
+        entityManager.clear();
+        index = 0;
+
+        List<Long> ids = entityManager
+                .createQuery("select u.id from User u where u.id > :lastId and u.id <= :maxId order by u.id", Long.class)
+                .setParameter("lastId", lastId)
+                .setParameter("maxId", maxId)
+                .setMaxResults(pageSize)
+                .getResultList();
+        last = ids.size() < pageSize;
+        if (ids.isEmpty()) {
+            page = Collections.emptyList();
+            return;
+        }
+
+        page = entityManager
+                .createQuery("select distinct u from User u left join fetch u.orders where u.id in :ids order by u.id", User.class)
+                .setParameter("ids", ids)
+                .getResultList();
+    }
+}
@@ -11,8 +11,8 @@ public interface UserRepository extends JpaRepository<User, Long> {
     List<User> findAllByUpdatedDate(LocalDate updatedDate);
 
     @Query("select min(u.id) from User u")
-    long findMinId();
+    Long findMinId();
 
     @Query("select max(u.id) from User u")
-    long findMaxId();
+    Long findMaxId();
 }
@@ -0,0 +1,29 @@
+package me.study.springbatch.part5;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Lob;
+import java.time.LocalDate;
+
+@Entity
+@Getter
+@NoArgsConstructor
+public class DailyOrderRollup {
+
+    @Id
+    private LocalDate createdDate;
+
+    private long totalAmount;
+
+    private long orderCount;
+
+    private long tentativeAmount;
+
+    private long tentativeCount;
+
+    @Lob
+    private byte[] buyerSketch;
+}
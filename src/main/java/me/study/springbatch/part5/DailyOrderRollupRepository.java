@@ -0,0 +1,23 @@
+package me.study.springbatch.part5;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface DailyOrderRollupRepository extends JpaRepository<DailyOrderRollup, LocalDate> {
+
+    List<DailyOrderRollup> findAllByCreatedDateBetween(LocalDate startDate, LocalDate endDate);
+
+    default long countUniqueBuyers(LocalDate startDate, LocalDate endDate) {
+        HyperLogLog merged = null;
+        for (DailyOrderRollup rollup : findAllByCreatedDateBetween(startDate, endDate)) {
+            if (rollup.getBuyerSketch() == null) {
+                continue;
+            }
+            HyperLogLog sketch = HyperLogLog.fromBytes(rollup.getBuyerSketch());
+            merged = merged == null ? sketch : merged.merge(sketch);
+        }
+        return merged == null ? 0 : merged.estimate();
+    }
+}
@@ -0,0 +1,192 @@
+package me.study.springbatch.part5;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.step.tasklet.Tasklet;
+import org.springframework.batch.repeat.RepeatStatus;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import javax.sql.DataSource;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 마지막으로 확정한 주문 id(watermark) 이후의 주문을 일자별로 묶어 daily_order_rollup 에 더한다.
+ * 스텝 트랜잭션 안에서 rollup 과 watermark 를 함께 갱신하므로 실패하면 둘 다 롤백된다.
+ * 같은 scan 에서 일자별 구매자 HyperLogLog sketch 를 만들어 저장된 sketch 와 병합하므로
+ * 월/분기 구매자 수는 원본 주문을 다시 읽지 않고 sketch 병합으로 구할 수 있다.
+ * 이미 반영된 주문이 수정되거나 삭제된 경우는 반영하지 않는다.
+ * <p>
+ * auto increment id 는 커밋 순서대로 보이지 않으므로 지금 보이는 max(id) 까지 바로 반영하되,
+ * commitGrace 가 지나지 않은 id 구간은 잠정(tentative_amount, tentative_count)으로 따로 기록한다.
+ * 다음 실행은 잠정분을 빼고 watermark 이후를 다시 읽어 그 사이 늦게 커밋된 작은 id 의 주문까지 반영한다.
+ * max(id) 를 관찰한 뒤 commitGrace 가 지나면 그 id 까지를 확정해 watermark 로 삼는다.
+ * sketch 는 같은 구매자를 다시 더해도 변하지 않으므로 다시 읽은 구간도 그대로 병합한다.
+ * commitGrace 보다 오래 열린 트랜잭션은 없다고 가정한다.
+ * watermark 행은 select ... for update 로 잠가 동시에 실행된 스텝이 같은 구간을 두 번 더하지 않게 한다.
+ */
+@Slf4j
+public class DailyOrderRollupTasklet implements Tasklet {
+
+    public static final String WATERMARK_NAME = "daily_order_rollup";
+
+    private static final int FETCH_SIZE = 1_000;
+    private static final long SCAN_RANGE = 100_000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final double buyerSketchError;
+    private final Duration commitGrace;
+
+    public DailyOrderRollupTasklet(DataSource dataSource, double buyerSketchError, Duration commitGrace) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(FETCH_SIZE);
+        this.buyerSketchError = buyerSketchError;
+        this.commitGrace = commitGrace;
+    }
+
+    @Override
+    public RepeatStatus execute(StepContribution contribution, ChunkContext chunkContext) {
+        Watermark current = lockWatermark();
+        long watermark = current.lastOrderId;
+        LocalDateTime now = LocalDateTime.now();
+
+        Long foundMaxId = jdbcTemplate.queryForObject("select max(id) from orders", Long.class);
+        long maxId = foundMaxId == null ? 0 : foundMaxId;
+
+        // commitGrace 전에 관찰한 max(id) 까지는 확정하고, 확정되지 않은 관찰이 없으면 지금의 max(id) 를 새로 관찰한다.
+        long confirmedId = watermark;
+        long pendingId = current.pendingOrderId;
+        LocalDateTime observedAt = current.pendingObservedAt;
+        if (pendingId > watermark && observedAt != null && !observedAt.plus(commitGrace).isAfter(now)) {
+            confirmedId = pendingId;
+        }
+        if (pendingId <= confirmedId) {
+            pendingId = maxId;
+            observedAt = now;
+        }
+
+        if (maxId <= watermark) {
+            log.info("daily order rollup is up to date, watermark: {}", watermark);
+            return RepeatStatus.FINISHED;
+        }
+
+        // 지난 실행의 잠정분은 이번에 watermark 이후를 다시 읽어 다시 더하므로 먼저 뺀다.
+        jdbcTemplate.update("update daily_order_rollup"
+                + " set total_amount = total_amount - tentative_amount, order_count = order_count - tentative_count,"
+                + " tentative_amount = 0, tentative_count = 0"
+                + " where tentative_count <> 0");
+
+        Map<LocalDate, DailyDelta> deltas = new TreeMap<>();
+        long lastConfirmedId = confirmedId;
+        // 드라이버가 결과를 한 번에 메모리에 올리더라도 SCAN_RANGE 개 id 씩만 올라오도록 구간을 나눠 읽는다.
+        for (long fromId = watermark; fromId < maxId; fromId += SCAN_RANGE) {
+            jdbcTemplate.query("select id, created_date, amount, user_id from orders where id > ? and id <= ?",
+                    (RowCallbackHandler) rs -> deltas
+                            .computeIfAbsent(rs.getDate(2).toLocalDate(), x -> new DailyDelta(buyerSketchError))
+                            .add(rs.getLong(3), rs.getLong(4), rs.getLong(1) > lastConfirmedId),
+                    fromId, Math.min(fromId + SCAN_RANGE, maxId));
+        }
+
+        for (Map.Entry<LocalDate, DailyDelta> entry : deltas.entrySet()) {
+            Date createdDate = Date.valueOf(entry.getKey());
+            DailyDelta delta = entry.getValue();
+
+            List<byte[]> sketches = jdbcTemplate.query(
+                    "select buyer_sketch from daily_order_rollup where created_date = ?",
+                    (rs, rowNum) -> rs.getBytes(1), createdDate);
+            if (sketches.isEmpty()) {
+                jdbcTemplate.update("insert into daily_order_rollup(total_amount, order_count,"
+                                + " tentative_amount, tentative_count, buyer_sketch, created_date)"
+                                + " values (?, ?, ?, ?, ?, ?)",
+                        delta.amount, delta.count, delta.tentativeAmount, delta.tentativeCount,
+                        delta.buyers.toBytes(), createdDate);
+                continue;
+            }
+
+            HyperLogLog buyers = sketches.get(0) == null
+                    ? delta.buyers
+                    : HyperLogLog.fromBytes(sketches.get(0)).merge(delta.buyers);
+            jdbcTemplate.update("update daily_order_rollup"
+                            + " set total_amount = total_amount + ?, order_count = order_count + ?,"
+                            + " tentative_amount = ?, tentative_count = ?, buyer_sketch = ?"
+                            + " where created_date = ?",
+                    delta.amount, delta.count, delta.tentativeAmount, delta.tentativeCount,
+                    buyers.toBytes(), createdDate);
+        }
+
+        jdbcTemplate.update("update order_rollup_watermark"
+                        + " set last_order_id = ?, pending_order_id = ?, pending_observed_at = ? where name = ?",
+                confirmedId, pendingId, Timestamp.valueOf(observedAt), WATERMARK_NAME);
+
+        contribution.incrementWriteCount(deltas.size());
+        log.info("daily order rollup: {} days updated up to order {}, watermark {} -> {}",
+                deltas.size(), maxId, watermark, confirmedId);
+        return RepeatStatus.FINISHED;
+    }
+
+    /**
+     * watermark 행이 없으면 먼저 만들고(동시에 만들면 primary key 로 하나만 남는다) 스텝 트랜잭션이 끝날 때까지 잠근다.
+     */
+    private Watermark lockWatermark() {
+        try {
+            jdbcTemplate.update("insert into order_rollup_watermark(name, last_order_id, pending_order_id) values (?, 0, 0)",
+                    WATERMARK_NAME);
+        } catch (DuplicateKeyException e) {
+            // 이미 있는 행을 잠그면 된다.
+        }
+
+        return jdbcTemplate.queryForObject("select last_order_id, pending_order_id, pending_observed_at"
+                        + " from order_rollup_watermark where name = ? for update",
+                (rs, rowNum) -> {
+                    Timestamp observedAt = rs.getTimestamp(3);
+                    return new Watermark(rs.getLong(1), rs.getLong(2),
+                            observedAt == null ? null : observedAt.toLocalDateTime());
+                },
+                WATERMARK_NAME);
+    }
+
+    private static class Watermark {
+
+        private final long lastOrderId;
+        private final long pendingOrderId;
+        private final LocalDateTime pendingObservedAt;
+
+        private Watermark(long lastOrderId, long pendingOrderId, LocalDateTime pendingObservedAt) {
+            this.lastOrderId = lastOrderId;
+            this.pendingOrderId = pendingOrderId;
+            this.pendingObservedAt = pendingObservedAt;
+        }
+    }
+
+    private static class DailyDelta {
+
+        private final HyperLogLog buyers;
+        private long amount;
+        private long count;
+        private long tentativeAmount;
+        private long tentativeCount;
+
+        private DailyDelta(double buyerSketchError) {
+            this.buyers = HyperLogLog.withStandardError(buyerSketchError);
+        }
+
+        private void add(long amount, long userId, boolean tentative) {
+            this.amount += amount;
+            this.count++;
+            if (tentative) {
+                this.tentativeAmount += amount;
+                this.tentativeCount++;
+            }
+            this.buyers.add(userId);
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package me.study.springbatch.part5;
+
+import java.util.Arrays;
+
+/**
+ * 중복을 제거한 개수를 추정하는 HyperLogLog sketch.
+ * register 수가 m = 2^precision 일 때 표준 오차는 약 1.04 / sqrt(m) 이다.
+ * register 별 최댓값을 취하는 것으로 병합되며, precision 이 다르면 낮은 쪽으로 맞춘 뒤 병합한다.
+ */
+public class HyperLogLog {
+
+    public static final int MIN_PRECISION = 4;
+    public static final int MAX_PRECISION = 16;
+
+    private int precision;
+    private byte[] registers;
+
+    public HyperLogLog(int precision) {
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException("precision must be between "
+                    + MIN_PRECISION + " and " + MAX_PRECISION + ": " + precision);
+        }
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    private HyperLogLog(int precision, byte[] registers) {
+        this.precision = precision;
+        this.registers = registers;
+    }
+
+    public static HyperLogLog withStandardError(double standardError) {
+        if (standardError <= 0 || standardError >= 1) {
+            throw new IllegalArgumentException("standardError must be between 0 and 1: " + standardError);
+        }
+        double registerCount = Math.pow(1.04 / standardError, 2);
+        int precision = (int) Math.ceil(Math.log(registerCount) / Math.log(2));
+        return new HyperLogLog(Math.max(MIN_PRECISION, Math.min(MAX_PRECISION, precision)));
+    }
+
+    public static HyperLogLog fromBytes(byte[] bytes) {
+        int precision = bytes[0];
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION || bytes.length != (1 << precision) + 1) {
+            throw new IllegalArgumentException("invalid HyperLogLog sketch of " + bytes.length + " bytes");
+        }
+        return new HyperLogLog(precision, Arrays.copyOfRange(bytes, 1, bytes.length));
+    }
+
+    public void add(long value) {
+        long hash = hash(value);
+        int index = (int) (hash >>> (64 - precision));
+        int rank = Math.min(Long.numberOfLeadingZeros(hash << precision), 64 - precision) + 1;
+        if (rank > registers[index]) {
+            registers[index] = (byte) rank;
+        }
+    }
+
+    public HyperLogLog merge(HyperLogLog other) {
+        if (other.precision < precision) {
+            registers = fold(registers, precision, other.precision);
+            precision = other.precision;
+        }
+        byte[] source = other.precision == precision
+                ? other.registers
+                : fold(other.registers, other.precision, precision);
+        for (int i = 0; i < registers.length; i++) {
+            if (source[i] > registers[i]) {
+                registers[i] = source[i];
+            }
+        }
+        return this;
+    }
+
+    public long estimate() {
+        int m = registers.length;
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+
+        double estimate = alpha(m) * m * m / sum;
+        if (estimate <= 2.5 * m && zeros > 0) {
+            estimate = m * Math.log((double) m / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
+
+    public byte[] toBytes() {
+        byte[] bytes = new byte[registers.length + 1];
+        bytes[0] = (byte) precision;
+        System.arraycopy(registers, 0, bytes, 1, registers.length);
+        return bytes;
+    }
+
+    /**
+     * index 의 하위 비트를 rank 쪽으로 넘겨 더 낮은 precision 의 register 로 접는다.
+     */
+    private static byte[] fold(byte[] registers, int from, int to) {
+        int shift = from - to;
+        byte[] folded = new byte[1 << to];
+        for (int i = 0; i < registers.length; i++) {
+            if (registers[i] == 0) {
+                continue;
+            }
+            int droppedBits = i & ((1 << shift) - 1);
+            int rank = droppedBits == 0
+                    ? registers[i] + shift
+                    : Integer.numberOfLeadingZeros(droppedBits) - (32 - shift) + 1;
+            int index = i >>> shift;
+            if (rank > folded[index]) {
+                folded[index] = (byte) rank;
+            }
+        }
+        return folded;
+    }
+
+    private static double alpha(int m) {
+        switch (m) {
+            case 16:
+                return 0.673;
+            case 32:
+                return 0.697;
+            case 64:
+                return 0.709;
+            default:
+                return 0.7213 / (1 + 1.079 / m);
+        }
+    }
+
+    private static long hash(long value) {
+        long h = value;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
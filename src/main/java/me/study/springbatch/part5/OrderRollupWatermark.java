@@ -0,0 +1,23 @@
+package me.study.springbatch.part5;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import java.time.LocalDateTime;
+
+@Entity
+@Getter
+@NoArgsConstructor
+public class OrderRollupWatermark {
+
+    @Id
+    private String name;
+
+    private long lastOrderId;
+
+    private long pendingOrderId;
+
+    private LocalDateTime pendingObservedAt;
+}
@@ -8,12 +8,34 @@ import java.time.LocalDate;
 @Getter
 public class OrderStatistics {
 
-    private String amount;
+    private long amount;
     private LocalDate date;
+    private long uniqueBuyers;
+    private long count;
+    private long p50;
+    private long p90;
+    private long p99;
 
     @Builder
-    private OrderStatistics(String amount, LocalDate date) {
+    private OrderStatistics(long amount, LocalDate date, long uniqueBuyers, long count, long p50, long p90, long p99) {
         this.amount = amount;
         this.date = date;
+        this.uniqueBuyers = uniqueBuyers;
+        this.count = count;
+        this.p50 = p50;
+        this.p90 = p90;
+        this.p99 = p99;
+    }
+
+    public static OrderStatistics of(LocalDate date, long amount, HyperLogLog buyers, AmountHistogram histogram) {
+        return OrderStatistics.builder()
+                .amount(amount)
+                .date(date)
+                .uniqueBuyers(buyers.estimate())
+                .count(histogram.getCount())
+                .p50(histogram.quantile(0.5))
+                .p90(histogram.quantile(0.9))
+                .p99(histogram.quantile(0.99))
+                .build();
     }
 }
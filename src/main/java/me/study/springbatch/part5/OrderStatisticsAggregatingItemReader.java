@@ -0,0 +1,89 @@
+package me.study.springbatch.part5;
+
+import org.springframework.batch.item.support.AbstractItemCountingItemStreamItemReader;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import javax.sql.DataSource;
+import java.sql.Date;
+import java.time.YearMonth;
+
+/**
+ * group by 쿼리를 페이지마다 다시 실행하는 대신 한 달 치 주문을 cursor 로 한 번만 읽고
+ * 일자별 합계를 long[] 에 누적한 뒤 주문이 있는 날짜만 순서대로 내보낸다.
+ * 같은 pass 에서 일자별 AmountHistogram 에 주문 금액을, HyperLogLog 에 구매자를 기록해
+ * 주문 수, 분위수, 구매자 수도 함께 채운다.
+ */
+public class OrderStatisticsAggregatingItemReader extends AbstractItemCountingItemStreamItemReader<OrderStatistics> {
+
+    private static final String SQL = "select created_date, amount, user_id from orders where created_date >= ? and created_date <= ?";
+
+    private final DataSource dataSource;
+    private final YearMonth yearMonth;
+    private final int fetchSize;
+    private final double buyerSketchError;
+
+    private long[] totals;
+    private AmountHistogram[] histograms;
+    private HyperLogLog[] buyers;
+    private int day;
+
+    public OrderStatisticsAggregatingItemReader(DataSource dataSource, YearMonth yearMonth, int fetchSize,
+                                                double buyerSketchError, String name) {
+        this.dataSource = dataSource;
+        this.yearMonth = yearMonth;
+        this.fetchSize = fetchSize;
+        this.buyerSketchError = buyerSketchError;
+        setName(name);
+    }
+
+    @Override
+    protected void doOpen() {
+        int length = yearMonth.lengthOfMonth();
+        long[] totals = new long[length];
+        AmountHistogram[] histograms = new AmountHistogram[length];
+        HyperLogLog[] buyers = new HyperLogLog[length];
+
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.setFetchSize(fetchSize);
+        jdbcTemplate.query(SQL, (RowCallbackHandler) rs -> {
+            int index = rs.getDate(1).toLocalDate().getDayOfMonth() - 1;
+            long amount = rs.getLong(2);
+            totals[index] += amount;
+            if (histograms[index] == null) {
+                histograms[index] = new AmountHistogram();
+                buyers[index] = HyperLogLog.withStandardError(buyerSketchError);
+            }
+            histograms[index].record(amount);
+            buyers[index].add(rs.getLong(3));
+        }, Date.valueOf(yearMonth.atDay(1)), Date.valueOf(yearMonth.atEndOfMonth()));
+
+        this.totals = totals;
+        this.histograms = histograms;
+        this.buyers = buyers;
+        this.day = 0;
+    }
+
+    @Override
+    protected OrderStatistics doRead() {
+        while (day < totals.length && histograms[day] == null) {
+            day++;
+        }
+        if (day >= totals.length) {
+            return null;
+        }
+
+        OrderStatistics orderStatistics = OrderStatistics.of(yearMonth.atDay(day + 1), totals[day], buyers[day], histograms[day]);
+        histograms[day] = null;
+        buyers[day] = null;
+        day++;
+        return orderStatistics;
+    }
+
+    @Override
+    protected void doClose() {
+        totals = null;
+        histograms = null;
+        buyers = null;
+    }
+}
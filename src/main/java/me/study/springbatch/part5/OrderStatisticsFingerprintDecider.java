@@ -0,0 +1,121 @@
+package me.study.springbatch.part5;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.batch.core.job.flow.FlowExecutionStatus;
+import org.springframework.batch.core.job.flow.JobExecutionDecider;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Date;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * 통계 스텝이 읽는 원본으로 fingerprint 를 만든다. stream 모드는 orders 를 직접 읽으므로 해당 월 주문의 max(id), count(*), sum(amount) 를,
+ * 그 밖의 모드는 daily_order_rollup 을 읽으므로 rollup watermark 와 해당 월 rollup 행의 수, order_count 합, total_amount 합을 쓴다.
+ * 모드까지 붙인 fingerprint 가 이전 출력 파일 옆에 저장된 fingerprint 와 같으면 UNCHANGED 를 반환해 통계 스텝을 건너뛴다.
+ * 통계 스텝의 listener 로도 등록해 스텝이 성공하면 새 fingerprint 를 저장한다.
+ */
+@Slf4j
+public class OrderStatisticsFingerprintDecider implements JobExecutionDecider, StepExecutionListener {
+
+    public static final FlowExecutionStatus UNCHANGED = new FlowExecutionStatus("UNCHANGED");
+
+    private static final String FINGERPRINT_KEY = "orderStatisticsFingerprint";
+    private static final String STREAM_MODE = "stream";
+    private static final String ORDERS_SQL = "select coalesce(max(id), 0), count(*), coalesce(sum(amount), 0) from orders"
+            + " where created_date >= ? and created_date <= ?";
+    private static final String WATERMARK_SQL = "select last_order_id from order_rollup_watermark where name = ?";
+    private static final String ROLLUP_SQL = "select count(*), coalesce(sum(order_count), 0), coalesce(sum(total_amount), 0)"
+            + " from daily_order_rollup where created_date >= ? and created_date <= ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Function<JobParameters, Path> outputPath;
+
+    public OrderStatisticsFingerprintDecider(DataSource dataSource, Function<JobParameters, Path> outputPath) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.outputPath = outputPath;
+    }
+
+    @Override
+    public FlowExecutionStatus decide(JobExecution jobExecution, StepExecution stepExecution) {
+        YearMonth yearMonth = YearMonth.parse(jobExecution.getJobParameters().getString("date"));
+        String mode = jobExecution.getJobParameters().getString("statistics_mode", "paging");
+
+        String fingerprint = mode + ":" + fingerprint(mode, yearMonth);
+        jobExecution.getExecutionContext().putString(FINGERPRINT_KEY, fingerprint);
+
+        Path output = outputPath.apply(jobExecution.getJobParameters());
+        Path stored = fingerprintPath(output);
+        if (Files.exists(output) && Files.exists(stored) && fingerprint.equals(read(stored))) {
+            log.info("order statistics for {} are unchanged, fingerprint: {}", yearMonth, fingerprint);
+            return UNCHANGED;
+        }
+        return JobParametersDecider.CONTINUE;
+    }
+
+    @Override
+    public void beforeStep(StepExecution stepExecution) {
+    }
+
+    @Override
+    public ExitStatus afterStep(StepExecution stepExecution) {
+        JobExecution jobExecution = stepExecution.getJobExecution();
+        String fingerprint = jobExecution.getExecutionContext().getString(FINGERPRINT_KEY, null);
+        if (fingerprint == null || !ExitStatus.COMPLETED.equals(stepExecution.getExitStatus())) {
+            return null;
+        }
+
+        write(fingerprintPath(outputPath.apply(jobExecution.getJobParameters())), fingerprint);
+        return null;
+    }
+
+    private String fingerprint(String mode, YearMonth yearMonth) {
+        Date startDate = Date.valueOf(yearMonth.atDay(1));
+        Date endDate = Date.valueOf(yearMonth.atEndOfMonth());
+        if (STREAM_MODE.equals(mode)) {
+            return jdbcTemplate.queryForObject(ORDERS_SQL,
+                    (rs, rowNum) -> rs.getLong(1) + ":" + rs.getLong(2) + ":" + rs.getLong(3),
+                    startDate, endDate);
+        }
+
+        List<Long> watermark = jdbcTemplate.queryForList(WATERMARK_SQL, Long.class, DailyOrderRollupTasklet.WATERMARK_NAME);
+        return (watermark.isEmpty() ? 0 : watermark.get(0)) + ":" + jdbcTemplate.queryForObject(ROLLUP_SQL,
+                (rs, rowNum) -> rs.getLong(1) + ":" + rs.getLong(2) + ":" + rs.getLong(3),
+                startDate, endDate);
+    }
+
+    private static Path fingerprintPath(Path output) {
+        return output.resolveSibling(output.getFileName() + ".fingerprint");
+    }
+
+    private static String read(Path path) {
+        try {
+            return new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void write(Path path, String fingerprint) {
+        try {
+            Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+            Files.write(temp, fingerprint.getBytes(StandardCharsets.UTF_8));
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package me.study.springbatch.part5;
+
+import me.study.springbatch.part3.AppendingLineAggregator;
+
+/**
+ * BeanWrapperFieldExtractor 와 DelimitedLineAggregator 를 거치지 않고
+ * "total_amount,date" 형식의 한 줄을 바로 만든다.
+ * withBuyers 이면 구매자 수 추정치를, withDistribution 이면 주문 수와 p50/p90/p99 주문 금액을 뒤에 덧붙인다.
+ */
+public class OrderStatisticsLineAggregator implements AppendingLineAggregator<OrderStatistics> {
+
+    private static final String HEADER = "total_amount,date";
+    private static final String BUYERS_HEADER = ",unique_buyers";
+    private static final String DISTRIBUTION_HEADER = ",order_count,p50_amount,p90_amount,p99_amount";
+
+    private final boolean withBuyers;
+    private final boolean withDistribution;
+
+    public OrderStatisticsLineAggregator() {
+        this(false, false);
+    }
+
+    public OrderStatisticsLineAggregator(boolean withBuyers, boolean withDistribution) {
+        this.withBuyers = withBuyers;
+        this.withDistribution = withDistribution;
+    }
+
+    public String getHeader() {
+        return HEADER + (withBuyers ? BUYERS_HEADER : "") + (withDistribution ? DISTRIBUTION_HEADER : "");
+    }
+
+    @Override
+    public String aggregate(OrderStatistics item) {
+        StringBuilder line = new StringBuilder(withDistribution ? 64 : 24);
+        append(item, line);
+        return line.toString();
+    }
+
+    @Override
+    public void append(OrderStatistics item, StringBuilder line) {
+        line.append(item.getAmount())
+                .append(',')
+                .append(item.getDate());
+        if (withBuyers) {
+            line.append(',').append(item.getUniqueBuyers());
+        }
+        if (withDistribution) {
+            line.append(',').append(item.getCount())
+                    .append(',').append(item.getP50())
+                    .append(',').append(item.getP90())
+                    .append(',').append(item.getP99());
+        }
+    }
+}
@@ -21,12 +21,12 @@ public class Orders {
 
     private String itemName;
 
-    private int amount;
+    private long amount;
 
     private LocalDate createdDate;
 
     @Builder
-    private Orders(String itemName, int amount, LocalDate createdDate) {
+    private Orders(String itemName, long amount, LocalDate createdDate) {
         this.itemName = itemName;
         this.amount = amount;
         this.createdDate = createdDate;
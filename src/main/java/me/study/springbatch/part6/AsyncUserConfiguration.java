@@ -2,18 +2,20 @@ package me.study.springbatch.part6;
 
 import lombok.extern.slf4j.Slf4j;
 import me.study.springbatch.part4.LevelUpJobExecutionListener;
+import me.study.springbatch.part4.PrefetchingItemReader;
 import me.study.springbatch.part4.SaveUserTasklet;
 import me.study.springbatch.part4.User;
 import me.study.springbatch.part4.UserRepository;
 import me.study.springbatch.part5.JobParametersDecider;
 import me.study.springbatch.part5.OrderStatistics;
+import me.study.springbatch.part5.OrderStatisticsLineAggregator;
 import org.springframework.batch.core.Job;
 import org.springframework.batch.core.Step;
 import org.springframework.batch.core.configuration.annotation.JobBuilderFactory;
 import org.springframework.batch.core.configuration.annotation.JobScope;
 import org.springframework.batch.core.configuration.annotation.StepBuilderFactory;
+import org.springframework.batch.core.configuration.annotation.StepScope;
 import org.springframework.batch.core.launch.support.RunIdIncrementer;
-import org.springframework.batch.integration.async.AsyncItemProcessor;
 import org.springframework.batch.integration.async.AsyncItemWriter;
 import org.springframework.batch.item.ItemProcessor;
 import org.springframework.batch.item.ItemReader;
@@ -25,8 +27,6 @@ import org.springframework.batch.item.database.builder.JdbcPagingItemReaderBuild
 import org.springframework.batch.item.database.builder.JpaPagingItemReaderBuilder;
 import org.springframework.batch.item.file.FlatFileItemWriter;
 import org.springframework.batch.item.file.builder.FlatFileItemWriterBuilder;
-import org.springframework.batch.item.file.transform.BeanWrapperFieldExtractor;
-import org.springframework.batch.item.file.transform.DelimitedLineAggregator;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -36,9 +36,7 @@ import org.springframework.core.task.TaskExecutor;
 import javax.persistence.EntityManagerFactory;
 import javax.sql.DataSource;
 import java.nio.charset.StandardCharsets;
-import java.time.LocalDate;
 import java.time.YearMonth;
-import java.time.format.DateTimeFormatter;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.Future;
@@ -49,6 +47,8 @@ public class AsyncUserConfiguration {
 
     private static final String JOB_NAME = "asyncUserJob";
     private static final int CHUNK = 1_000;
+    private static final int PREFETCH_DEPTH = 2;
+    private static final int MAX_IN_FLIGHT = 200;
 
     private final JobBuilderFactory jobBuilderFactory;
     private final StepBuilderFactory stepBuilderFactory;
@@ -116,13 +116,16 @@ public class AsyncUserConfiguration {
                 .queryString("select u from User u")
                 .entityManagerFactory(entityManagerFactory)
                 .pageSize(CHUNK)
+                .transacted(false)
                 .name(JOB_NAME + "_userItemReader")
                 .build();
         itemReader.afterPropertiesSet();
-        return itemReader;
+        return new PrefetchingItemReader<>(itemReader, CHUNK, PREFETCH_DEPTH);
     }
 
-    private AsyncItemProcessor<User, User> itemProcessor() {
+    @Bean(JOB_NAME + "_itemProcessor")
+    @StepScope
+    public BoundedAsyncItemProcessor<User, User> itemProcessor() {
         ItemProcessor<User, User> itemProcessor = user -> {
             if (user.availableLevelUp()) {
                 return user;
@@ -130,10 +133,7 @@ public class AsyncUserConfiguration {
             return null;
         };
 
-        AsyncItemProcessor<User, User> asyncItemProcessor = new AsyncItemProcessor<>();
-        asyncItemProcessor.setDelegate(itemProcessor);
-        asyncItemProcessor.setTaskExecutor(taskExecutor);
-        return asyncItemProcessor;
+        return new BoundedAsyncItemProcessor<>(itemProcessor, taskExecutor, MAX_IN_FLIGHT, true);
     }
 
     private AsyncItemWriter<User> itemWriter() {
@@ -160,8 +160,8 @@ public class AsyncUserConfiguration {
         JdbcPagingItemReader<OrderStatistics> itemReader = new JdbcPagingItemReaderBuilder<OrderStatistics>()
                 .dataSource(dataSource)
                 .rowMapper((rs, rowNum) -> OrderStatistics.builder()
-                        .amount(rs.getString(1))
-                        .date(LocalDate.parse(rs.getString(2), DateTimeFormatter.ISO_DATE))
+                        .amount(rs.getLong(1))
+                        .date(rs.getDate(2).toLocalDate())
                         .build()
                 )
                 .pageSize(CHUNK)
@@ -181,18 +181,11 @@ public class AsyncUserConfiguration {
         YearMonth yearMonth = YearMonth.parse(date);
         String fileName = yearMonth.getYear() + "년_" + yearMonth.getMonthValue() + "월_일별_주문_금액.csv";
 
-        BeanWrapperFieldExtractor<OrderStatistics> fieldExtractor = new BeanWrapperFieldExtractor<>();
-        fieldExtractor.setNames(new String[]{"amount", "date"});
-
-        DelimitedLineAggregator<OrderStatistics> lineAggregator = new DelimitedLineAggregator<>();
-        lineAggregator.setDelimiter(",");
-        lineAggregator.setFieldExtractor(fieldExtractor);
-
         FlatFileItemWriter<OrderStatistics> itemWriter = new FlatFileItemWriterBuilder<OrderStatistics>()
                 .name(JOB_NAME + "_csvFileItemWriter")
                 .encoding(StandardCharsets.UTF_8.name())
                 .resource(new FileSystemResource("output/" + fileName))
-                .lineAggregator(lineAggregator)
+                .lineAggregator(new OrderStatisticsLineAggregator())
                 .headerCallback(writer -> writer.write("total_amount,date"))
                 .build();
         itemWriter.afterPropertiesSet();
@@ -0,0 +1,145 @@
+package me.study.springbatch.part6;
+
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.metrics.BatchMetrics;
+import org.springframework.batch.core.scope.context.StepContext;
+import org.springframework.batch.core.scope.context.StepSynchronizationManager;
+import org.springframework.batch.item.ItemProcessor;
+import org.springframework.core.task.TaskExecutor;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * AsyncItemProcessor 와 같지만 taskExecutor 에 맡겼으나 아직 끝나지 않은 작업 수를 maxInFlight 로 제한한다.
+ * permit 은 작업이 끝나거나 취소될 때 돌려주므로, executor 가 밀리면 reader 스레드가 대기하거나(callerRuns = false)
+ * 직접 처리한다(callerRuns = true). maxInFlight 는 chunk 크기보다 작아야 의미가 있다.
+ * 끝난 작업의 결과는 writer 가 가져갈 때까지 Future 에 남으므로, 들고 있는 결과 수는 chunk 크기로 제한된다.
+ */
+public class BoundedAsyncItemProcessor<I, O> implements ItemProcessor<I, Future<O>> {
+
+    private final ItemProcessor<I, O> delegate;
+    private final TaskExecutor taskExecutor;
+    private final int maxInFlight;
+    private final Semaphore permits;
+    private final boolean callerRuns;
+    private final Timer stallTimer;
+    private final LongAdder stallCount = new LongAdder();
+    private final LongAdder stallNanos = new LongAdder();
+
+    public BoundedAsyncItemProcessor(ItemProcessor<I, O> delegate,
+                                     TaskExecutor taskExecutor,
+                                     int maxInFlight,
+                                     boolean callerRuns) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("maxInFlight must be positive");
+        }
+        this.delegate = delegate;
+        this.taskExecutor = taskExecutor;
+        this.maxInFlight = maxInFlight;
+        this.permits = new Semaphore(maxInFlight);
+        this.callerRuns = callerRuns;
+        this.stallTimer = BatchMetrics.createTimer("item.process.stall",
+                "Time the reader thread spent stalled on a full async processor",
+                Tag.of("mode", callerRuns ? "caller_runs" : "block"));
+    }
+
+    @Override
+    public Future<O> process(I item) throws Exception {
+        if (permits.tryAcquire()) {
+            return submit(item);
+        }
+
+        long start = System.nanoTime();
+        try {
+            if (callerRuns) {
+                FutureTask<O> task = new FutureTask<>(() -> delegate.process(item));
+                task.run();
+                return task;
+            }
+            permits.acquire();
+        } finally {
+            recordStall(System.nanoTime() - start);
+        }
+        return submit(item);
+    }
+
+    public long getStallCount() {
+        return stallCount.sum();
+    }
+
+    public long getStallTime(TimeUnit unit) {
+        return unit.convert(stallNanos.sum(), TimeUnit.NANOSECONDS);
+    }
+
+    public int getInFlight() {
+        return maxInFlight - permits.availablePermits();
+    }
+
+    private Future<O> submit(I item) {
+        StepExecution stepExecution = getStepExecution();
+        PermitFutureTask<O> task = new PermitFutureTask<>(() -> {
+            if (stepExecution != null) {
+                StepSynchronizationManager.register(stepExecution);
+            }
+            try {
+                return delegate.process(item);
+            } finally {
+                if (stepExecution != null) {
+                    StepSynchronizationManager.close();
+                }
+            }
+        }, permits);
+
+        try {
+            taskExecutor.execute(task);
+        } catch (RuntimeException e) {
+            task.release();
+            throw e;
+        }
+        return task;
+    }
+
+    private void recordStall(long nanos) {
+        stallCount.increment();
+        stallNanos.add(nanos);
+        stallTimer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    private StepExecution getStepExecution() {
+        StepContext context = StepSynchronizationManager.getContext();
+        if (context == null) {
+            return null;
+        }
+        return context.getStepExecution();
+    }
+
+    private static class PermitFutureTask<O> extends FutureTask<O> {
+
+        private final Semaphore permits;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private PermitFutureTask(Callable<O> callable, Semaphore permits) {
+            super(callable);
+            this.permits = permits;
+        }
+
+        @Override
+        protected void done() {
+            release();
+        }
+
+        private void release() {
+            if (released.compareAndSet(false, true)) {
+                permits.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package me.study.springbatch.part6;
+
+import me.study.springbatch.part4.User;
+import me.study.springbatch.part5.OrderStatistics;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.annotation.AfterStep;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ItemStreamReader;
+import org.springframework.batch.item.database.JdbcCursorItemReader;
+import org.springframework.batch.item.database.builder.JdbcCursorItemReaderBuilder;
+import org.springframework.util.StringUtils;
+
+import javax.sql.DataSource;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * orders 를 user_id 순서로 한 번만 읽으면서 회원별 주문 합계(UserOrderTotal)를 내보내고,
+ * 같은 스캔에서 yearMonth 에 속한 주문은 일자별 합계에 누적한다.
+ * 일자별 합계는 스텝이 끝나면 JobExecutionContext 에 저장되어 다음 스텝에서 파일로 쓴다.
+ * 회원 등급 갱신은 다시 실행해도 결과가 같으므로 재시작 시에는 처음부터 다시 읽는다.
+ */
+public class FusedOrderScanItemReader implements ItemStreamReader<UserOrderTotal> {
+
+    public static final String DAILY_TOTALS_KEY = "fusedOrderScan.dailyTotals";
+
+    private static final String SQL = "select o.user_id, u.level, o.created_date, o.amount"
+            + " from orders o join user u on u.id = o.user_id"
+            + " order by o.user_id";
+
+    private final JdbcCursorItemReader<OrderRow> delegate;
+    private final YearMonth yearMonth;
+
+    private long[] dailyTotals;
+    private boolean[] ordered;
+    private OrderRow pending;
+
+    public FusedOrderScanItemReader(DataSource dataSource, YearMonth yearMonth, int fetchSize) throws Exception {
+        this.yearMonth = yearMonth;
+        this.delegate = new JdbcCursorItemReaderBuilder<OrderRow>()
+                .dataSource(dataSource)
+                .sql(SQL)
+                .fetchSize(fetchSize)
+                .saveState(false)
+                .rowMapper((rs, rowNum) -> new OrderRow(
+                        rs.getLong(1),
+                        User.Level.valueOf(rs.getString(2)),
+                        rs.getDate(3).toLocalDate(),
+                        rs.getLong(4)))
+                .build();
+        this.delegate.afterPropertiesSet();
+    }
+
+    @Override
+    public UserOrderTotal read() throws Exception {
+        OrderRow row = pending != null ? pending : delegate.read();
+        pending = null;
+        if (row == null) {
+            return null;
+        }
+
+        long userId = row.userId;
+        User.Level level = row.level;
+        long totalAmount = 0;
+
+        while (row != null && row.userId == userId) {
+            totalAmount += row.amount;
+            accumulate(row);
+            row = delegate.read();
+        }
+
+        pending = row;
+        return new UserOrderTotal(userId, level, totalAmount);
+    }
+
+    @Override
+    public void open(ExecutionContext executionContext) throws ItemStreamException {
+        int length = yearMonth == null ? 0 : yearMonth.lengthOfMonth();
+        dailyTotals = new long[length];
+        ordered = new boolean[length];
+        pending = null;
+        delegate.open(executionContext);
+    }
+
+    @Override
+    public void update(ExecutionContext executionContext) throws ItemStreamException {
+    }
+
+    @Override
+    public void close() throws ItemStreamException {
+        delegate.close();
+    }
+
+    @AfterStep
+    public ExitStatus saveDailyTotals(StepExecution stepExecution) {
+        List<String> values = new ArrayList<>();
+        for (int i = 0; i < dailyTotals.length; i++) {
+            if (ordered[i]) {
+                values.add((i + 1) + ":" + dailyTotals[i]);
+            }
+        }
+
+        stepExecution.getJobExecution()
+                .getExecutionContext()
+                .putString(DAILY_TOTALS_KEY, String.join(",", values));
+        return stepExecution.getExitStatus();
+    }
+
+    public static List<OrderStatistics> toOrderStatistics(YearMonth yearMonth, String dailyTotals) {
+        List<OrderStatistics> result = new ArrayList<>();
+        if (!StringUtils.hasText(dailyTotals)) {
+            return result;
+        }
+
+        for (String value : dailyTotals.split(",")) {
+            String[] pair = value.split(":");
+            result.add(OrderStatistics.builder()
+                    .date(yearMonth.atDay(Integer.parseInt(pair[0])))
+                    .amount(Long.parseLong(pair[1]))
+                    .build());
+        }
+        return result;
+    }
+
+    private void accumulate(OrderRow row) {
+        if (yearMonth == null || !YearMonth.from(row.createdDate).equals(yearMonth)) {
+            return;
+        }
+
+        int index = row.createdDate.getDayOfMonth() - 1;
+        dailyTotals[index] += row.amount;
+        ordered[index] = true;
+    }
+
+    private static class OrderRow {
+
+        private final long userId;
+        private final User.Level level;
+        private final LocalDate createdDate;
+        private final long amount;
+
+        private OrderRow(long userId, User.Level level, LocalDate createdDate, long amount) {
+            this.userId = userId;
+            this.level = level;
+            this.createdDate = createdDate;
+            this.amount = amount;
+        }
+    }
+}
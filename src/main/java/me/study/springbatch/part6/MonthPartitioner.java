@@ -0,0 +1,57 @@
+package me.study.springbatch.part6;
+
+import org.springframework.batch.core.partition.support.Partitioner;
+import org.springframework.batch.item.ExecutionContext;
+
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class MonthPartitioner implements Partitioner {
+
+    public static final String MONTH_KEY = "month";
+
+    private final YearMonth from;
+    private final YearMonth to;
+
+    public MonthPartitioner(YearMonth from, YearMonth to) {
+        if (from.isAfter(to)) {
+            throw new IllegalArgumentException("from(" + from + ") must not be after to(" + to + ")");
+        }
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * partition_2020-01 : 2020-01
+     * partition_2020-02 : 2020-02
+     * ...
+     * 파티션 이름이 월로 고정되므로 재시작하면 완료되지 않은 월만 다시 실행된다.
+     */
+    @Override
+    public Map<String, ExecutionContext> partition(int gridSize) {
+        Map<String, ExecutionContext> result = new HashMap<>();
+
+        for (YearMonth month = from; !month.isAfter(to); month = month.plusMonths(1)) {
+            ExecutionContext value = new ExecutionContext();
+            value.putString(MONTH_KEY, month.toString());
+            result.put(partitionName(month), value);
+        }
+
+        return result;
+    }
+
+    public List<String> partitionNames() {
+        List<String> names = new ArrayList<>();
+        for (YearMonth month = from; !month.isAfter(to); month = month.plusMonths(1)) {
+            names.add(partitionName(month));
+        }
+        return names;
+    }
+
+    public static String partitionName(YearMonth month) {
+        return "partition_" + month;
+    }
+}
@@ -7,6 +7,7 @@ import me.study.springbatch.part4.User;
 import me.study.springbatch.part4.UserRepository;
 import me.study.springbatch.part5.JobParametersDecider;
 import me.study.springbatch.part5.OrderStatistics;
+import me.study.springbatch.part5.OrderStatisticsLineAggregator;
 import org.springframework.batch.core.Job;
 import org.springframework.batch.core.Step;
 import org.springframework.batch.core.configuration.annotation.JobBuilderFactory;
@@ -17,14 +18,10 @@ import org.springframework.batch.item.ItemProcessor;
 import org.springframework.batch.item.ItemReader;
 import org.springframework.batch.item.ItemWriter;
 import org.springframework.batch.item.database.JdbcPagingItemReader;
-import org.springframework.batch.item.database.JpaPagingItemReader;
 import org.springframework.batch.item.database.Order;
 import org.springframework.batch.item.database.builder.JdbcPagingItemReaderBuilder;
-import org.springframework.batch.item.database.builder.JpaPagingItemReaderBuilder;
 import org.springframework.batch.item.file.FlatFileItemWriter;
 import org.springframework.batch.item.file.builder.FlatFileItemWriterBuilder;
-import org.springframework.batch.item.file.transform.BeanWrapperFieldExtractor;
-import org.springframework.batch.item.file.transform.DelimitedLineAggregator;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -34,9 +31,7 @@ import org.springframework.core.task.TaskExecutor;
 import javax.persistence.EntityManagerFactory;
 import javax.sql.DataSource;
 import java.nio.charset.StandardCharsets;
-import java.time.LocalDate;
 import java.time.YearMonth;
-import java.time.format.DateTimeFormatter;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -46,6 +41,7 @@ public class MultiThreadUserConfiguration {
 
     private static final String JOB_NAME = "multiThreadUserJob";
     private static final int CHUNK = 1_000;
+    private static final int MAX_REORDER_BUFFER = 1_000;
 
     private final JobBuilderFactory jobBuilderFactory;
     private final StepBuilderFactory stepBuilderFactory;
@@ -105,21 +101,16 @@ public class MultiThreadUserConfiguration {
     @JobScope
     public Step orderStatisticsStep(@Value("#{jobParameters[date]}") String date) throws Exception {
         return stepBuilderFactory.get(JOB_NAME + "orderStatisticsStep")
-                .<OrderStatistics, OrderStatistics>chunk(100)
-                .reader(orderStatisticsItemReader(date))
-                .writer(orderStatisticsItemWriter(date))
+                .<SequencedItem<OrderStatistics>, SequencedItem<OrderStatistics>>chunk(100)
+                .reader(new SequencingItemReader<>(orderStatisticsItemReader(date)))
+                .writer(new ReorderingItemWriter<>(orderStatisticsItemWriter(date), MAX_REORDER_BUFFER))
+                .taskExecutor(taskExecutor)
+                .throttleLimit(8)
                 .build();
     }
 
-    private ItemReader<User> itemReader() throws Exception {
-        JpaPagingItemReader<User> itemReader = new JpaPagingItemReaderBuilder<User>()
-                .queryString("select u from User u")
-                .entityManagerFactory(entityManagerFactory)
-                .pageSize(CHUNK)
-                .name(JOB_NAME + "_userItemReader")
-                .build();
-        itemReader.afterPropertiesSet();
-        return itemReader;
+    private ItemReader<User> itemReader() {
+        return new UserIdBlockItemReader(entityManagerFactory, userRepository, CHUNK, JOB_NAME + "_userItemReader");
     }
 
     private ItemProcessor<User, User> itemProcessor() {
@@ -151,12 +142,13 @@ public class MultiThreadUserConfiguration {
         JdbcPagingItemReader<OrderStatistics> itemReader = new JdbcPagingItemReaderBuilder<OrderStatistics>()
                 .dataSource(dataSource)
                 .rowMapper((rs, rowNum) -> OrderStatistics.builder()
-                        .amount(rs.getString(1))
-                        .date(LocalDate.parse(rs.getString(2), DateTimeFormatter.ISO_DATE))
+                        .amount(rs.getLong(1))
+                        .date(rs.getDate(2).toLocalDate())
                         .build()
                 )
                 .pageSize(CHUNK)
                 .name(JOB_NAME + "_orderStatisticsItemReader")
+                .saveState(false)
                 .selectClause("sum(amount), created_date")
                 .fromClause("orders")
                 .whereClause("created_date >= :startDate and created_date <= :endDate")
@@ -172,19 +164,14 @@ public class MultiThreadUserConfiguration {
         YearMonth yearMonth = YearMonth.parse(date);
         String fileName = yearMonth.getYear() + "년_" + yearMonth.getMonthValue() + "월_일별_주문_금액.csv";
 
-        BeanWrapperFieldExtractor<OrderStatistics> fieldExtractor = new BeanWrapperFieldExtractor<>();
-        fieldExtractor.setNames(new String[]{"amount", "date"});
-
-        DelimitedLineAggregator<OrderStatistics> lineAggregator = new DelimitedLineAggregator<>();
-        lineAggregator.setDelimiter(",");
-        lineAggregator.setFieldExtractor(fieldExtractor);
-
         FlatFileItemWriter<OrderStatistics> itemWriter = new FlatFileItemWriterBuilder<OrderStatistics>()
                 .name(JOB_NAME + "_csvFileItemWriter")
                 .encoding(StandardCharsets.UTF_8.name())
                 .resource(new FileSystemResource("output/" + fileName))
-                .lineAggregator(lineAggregator)
+                .lineAggregator(new OrderStatisticsLineAggregator())
                 .headerCallback(writer -> writer.write("total_amount,date"))
+                .transactional(false)
+                .saveState(false)
                 .build();
         itemWriter.afterPropertiesSet();
         return itemWriter;
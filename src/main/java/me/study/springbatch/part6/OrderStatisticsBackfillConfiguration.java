@@ -0,0 +1,176 @@
+package me.study.springbatch.part6;
+
+import lombok.extern.slf4j.Slf4j;
+import me.study.springbatch.part5.OrderStatistics;
+import me.study.springbatch.part5.OrderStatisticsLineAggregator;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.Step;
+import org.springframework.batch.core.configuration.annotation.JobBuilderFactory;
+import org.springframework.batch.core.configuration.annotation.JobScope;
+import org.springframework.batch.core.configuration.annotation.StepBuilderFactory;
+import org.springframework.batch.core.configuration.annotation.StepScope;
+import org.springframework.batch.item.database.JdbcPagingItemReader;
+import org.springframework.batch.item.database.Order;
+import org.springframework.batch.item.database.builder.JdbcPagingItemReaderBuilder;
+import org.springframework.batch.item.file.FlatFileItemWriter;
+import org.springframework.batch.item.file.builder.FlatFileItemWriterBuilder;
+import org.springframework.batch.item.support.CompositeItemWriter;
+import org.springframework.batch.item.support.builder.CompositeItemWriterBuilder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.task.TaskExecutor;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.YearMonth;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * from ~ to 월 범위의 주문 통계를 월별 파티션으로 나눠 병렬로 만든다.
+ * 각 파티션은 daily_order_rollup 대신 해당 월 orders 를 일자별로 묶어 읽으므로 rollup 이 뒤처져 있어도 빈 파일을 만들지 않는다.
+ * 월별 파일은 userJob 보고서와 형식이 다르므로 _backfill 을 붙인 다른 이름으로 쓴다.
+ * from/to 가 곧 job instance 이므로 incrementer 를 두지 않는다.
+ * 실패한 backfill 을 같은 from/to 로 다시 실행하면 같은 instance 가 재시작되어 완료되지 않은 월만 다시 만든다.
+ * 이미 완료된 범위를 다시 만들려면 다른 파라미터를 함께 넘겨 새 instance 로 실행한다.
+ */
+@Configuration
+@Slf4j
+public class OrderStatisticsBackfillConfiguration {
+
+    private static final String JOB_NAME = "orderStatisticsBackfillJob";
+    private static final int CHUNK = 100;
+    private static final int GRID_SIZE = 8;
+
+    private final JobBuilderFactory jobBuilderFactory;
+    private final StepBuilderFactory stepBuilderFactory;
+    private final DataSource dataSource;
+    private final TaskExecutor taskExecutor;
+
+    public OrderStatisticsBackfillConfiguration(JobBuilderFactory jobBuilderFactory,
+                                                StepBuilderFactory stepBuilderFactory,
+                                                DataSource dataSource,
+                                                TaskExecutor taskExecutor) {
+        this.jobBuilderFactory = jobBuilderFactory;
+        this.stepBuilderFactory = stepBuilderFactory;
+        this.dataSource = dataSource;
+        this.taskExecutor = taskExecutor;
+    }
+
+    @Bean(JOB_NAME)
+    public Job orderStatisticsBackfillJob() throws Exception {
+        return jobBuilderFactory.get(JOB_NAME)
+                .start(orderStatisticsManagerStep(null, null))
+                .next(orderStatisticsConcatenationStep(null, null))
+                .build();
+    }
+
+    @Bean(JOB_NAME + "_orderStatisticsStep.manager")
+    @JobScope
+    public Step orderStatisticsManagerStep(@Value("#{jobParameters[from]}") String from,
+                                           @Value("#{jobParameters[to]}") String to) throws Exception {
+        return stepBuilderFactory.get(JOB_NAME + "_orderStatisticsStep.manager")
+                .partitioner(JOB_NAME + "_orderStatisticsStep",
+                        new MonthPartitioner(YearMonth.parse(from), YearMonth.parse(to)))
+                .step(orderStatisticsStep())
+                .taskExecutor(taskExecutor)
+                .gridSize(GRID_SIZE)
+                .build();
+    }
+
+    @Bean(JOB_NAME + "_orderStatisticsConcatenationStep")
+    @JobScope
+    public Step orderStatisticsConcatenationStep(@Value("#{jobParameters[from]}") String from,
+                                                 @Value("#{jobParameters[to]}") String to) {
+        MonthPartitioner partitioner = new MonthPartitioner(YearMonth.parse(from), YearMonth.parse(to));
+        String fileName = from + "_" + to + "_일별_주문_금액.csv";
+
+        return stepBuilderFactory.get(JOB_NAME + "_orderStatisticsConcatenationStep")
+                .tasklet(new PartFileConcatenationTasklet(
+                        partDirectory(from, to),
+                        partitioner.partitionNames(),
+                        Paths.get("output", fileName),
+                        writer -> writer.write("total_amount,date"),
+                        null))
+                .build();
+    }
+
+    @Bean(JOB_NAME + "_orderStatisticsStep")
+    public Step orderStatisticsStep() throws Exception {
+        return stepBuilderFactory.get(JOB_NAME + "_orderStatisticsStep")
+                .<OrderStatistics, OrderStatistics>chunk(CHUNK)
+                .reader(orderStatisticsItemReader(null))
+                .writer(orderStatisticsItemWriter(null, null, null))
+                .build();
+    }
+
+    @Bean(JOB_NAME + "_orderStatisticsItemReader")
+    @StepScope
+    public JdbcPagingItemReader<OrderStatistics> orderStatisticsItemReader(
+            @Value("#{stepExecutionContext[month]}") String month) throws Exception {
+        YearMonth yearMonth = YearMonth.parse(month);
+
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("startDate", yearMonth.atDay(1));
+        parameters.put("endDate", yearMonth.atEndOfMonth());
+
+        Map<String, Order> sortKey = new HashMap<>();
+        sortKey.put("created_date", Order.ASCENDING);
+
+        JdbcPagingItemReader<OrderStatistics> itemReader = new JdbcPagingItemReaderBuilder<OrderStatistics>()
+                .dataSource(dataSource)
+                .rowMapper((rs, rowNum) -> OrderStatistics.builder()
+                        .amount(rs.getLong(1))
+                        .date(rs.getDate(2).toLocalDate())
+                        .build()
+                )
+                .pageSize(CHUNK)
+                .name(JOB_NAME + "_orderStatisticsItemReader")
+                .selectClause("sum(amount), created_date")
+                .fromClause("orders")
+                .whereClause("created_date >= :startDate and created_date <= :endDate")
+                .groupClause("created_date")
+                .parameterValues(parameters)
+                .sortKeys(sortKey)
+                .build();
+        itemReader.afterPropertiesSet();
+        return itemReader;
+    }
+
+    @Bean(JOB_NAME + "_csvFileItemWriter")
+    @StepScope
+    public CompositeItemWriter<OrderStatistics> orderStatisticsItemWriter(
+            @Value("#{jobParameters[from]}") String from,
+            @Value("#{jobParameters[to]}") String to,
+            @Value("#{stepExecutionContext[month]}") String month) throws Exception {
+        YearMonth yearMonth = YearMonth.parse(month);
+        String fileName = yearMonth.getYear() + "년_" + yearMonth.getMonthValue() + "월_일별_주문_금액_backfill.csv";
+
+        FlatFileItemWriter<OrderStatistics> monthItemWriter = new FlatFileItemWriterBuilder<OrderStatistics>()
+                .name(JOB_NAME + "_csvFileItemWriter")
+                .encoding(StandardCharsets.UTF_8.name())
+                .resource(new FileSystemResource("output/" + fileName))
+                .lineAggregator(new OrderStatisticsLineAggregator())
+                .headerCallback(writer -> writer.write("total_amount,date"))
+                .build();
+        monthItemWriter.afterPropertiesSet();
+
+        PartFileItemWriter<OrderStatistics> partItemWriter = new PartFileItemWriter<>(partDirectory(from, to),
+                MonthPartitioner.partitionName(yearMonth), new OrderStatisticsLineAggregator(),
+                JOB_NAME + "_partFileItemWriter");
+
+        CompositeItemWriter<OrderStatistics> itemWriter = new CompositeItemWriterBuilder<OrderStatistics>()
+                .delegates(monthItemWriter, partItemWriter)
+                .build();
+        itemWriter.afterPropertiesSet();
+        return itemWriter;
+    }
+
+    private static Path partDirectory(String from, String to) {
+        return Paths.get("output", "parts", JOB_NAME, from + "_" + to);
+    }
+}
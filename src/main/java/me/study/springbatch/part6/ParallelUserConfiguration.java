@@ -2,11 +2,14 @@ package me.study.springbatch.part6;
 
 import lombok.extern.slf4j.Slf4j;
 import me.study.springbatch.part4.LevelUpJobExecutionListener;
+import me.study.springbatch.part4.PrefetchingItemReader;
 import me.study.springbatch.part4.SaveUserTasklet;
 import me.study.springbatch.part4.User;
 import me.study.springbatch.part4.UserRepository;
+import me.study.springbatch.part5.DailyOrderRollupTasklet;
 import me.study.springbatch.part5.JobParametersDecider;
 import me.study.springbatch.part5.OrderStatistics;
+import me.study.springbatch.part5.OrderStatisticsLineAggregator;
 import org.springframework.batch.core.Job;
 import org.springframework.batch.core.Step;
 import org.springframework.batch.core.configuration.annotation.JobBuilderFactory;
@@ -23,27 +26,30 @@ import org.springframework.batch.core.step.tasklet.TaskletStep;
 import org.springframework.batch.item.ItemProcessor;
 import org.springframework.batch.item.ItemReader;
 import org.springframework.batch.item.ItemWriter;
+import org.springframework.batch.item.database.JdbcBatchItemWriter;
 import org.springframework.batch.item.database.JdbcPagingItemReader;
 import org.springframework.batch.item.database.JpaPagingItemReader;
 import org.springframework.batch.item.database.Order;
+import org.springframework.batch.item.database.builder.JdbcBatchItemWriterBuilder;
 import org.springframework.batch.item.database.builder.JdbcPagingItemReaderBuilder;
 import org.springframework.batch.item.database.builder.JpaPagingItemReaderBuilder;
 import org.springframework.batch.item.file.FlatFileItemWriter;
 import org.springframework.batch.item.file.builder.FlatFileItemWriterBuilder;
-import org.springframework.batch.item.file.transform.BeanWrapperFieldExtractor;
-import org.springframework.batch.item.file.transform.DelimitedLineAggregator;
+import org.springframework.batch.item.support.ListItemReader;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.task.TaskExecutor;
+import org.springframework.util.StringUtils;
 
 import javax.persistence.EntityManagerFactory;
 import javax.sql.DataSource;
 import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.YearMonth;
-import java.time.format.DateTimeFormatter;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -53,6 +59,10 @@ public class ParallelUserConfiguration {
 
     private static final String JOB_NAME = "parallelUserJob";
     private static final int CHUNK = 1_000;
+    private static final int PREFETCH_DEPTH = 2;
+    private static final int FETCH_SIZE = 10_000;
+    private static final double BUYER_SKETCH_ERROR = 0.01;
+    private static final Duration ORDER_COMMIT_GRACE = Duration.ofMinutes(5);
 
     private final JobBuilderFactory jobBuilderFactory;
     private final StepBuilderFactory stepBuilderFactory;
@@ -81,7 +91,7 @@ public class ParallelUserConfiguration {
                 .incrementer(new RunIdIncrementer())
                 .listener(new LevelUpJobExecutionListener(userRepository))
                 .start(saveUserFlow())
-                .next(splitFlow(null))
+                .next(splitFlow(null, null))
                 .build()
                 .build();
     }
@@ -99,7 +109,12 @@ public class ParallelUserConfiguration {
 
     @Bean(JOB_NAME + "_splitFlow")
     @JobScope
-    public Flow splitFlow(@Value("#{jobParameters[date]}") String date) throws Exception {
+    public Flow splitFlow(@Value("#{jobParameters[date]}") String date,
+                          @Value("#{jobParameters[fused_scan]}") String fusedScan) throws Exception {
+        if (Boolean.parseBoolean(fusedScan)) {
+            return fusedFlow(date);
+        }
+
         SimpleFlow userLevelUpFlow = new FlowBuilder<SimpleFlow>(JOB_NAME + "_userLevelUpFlow")
                 .start(userLevelUpManagerStep())
                 .build();
@@ -138,11 +153,81 @@ public class ParallelUserConfiguration {
                 .build();
     }
 
+    private Flow fusedFlow(String date) throws Exception {
+        FlowBuilder<SimpleFlow> flowBuilder = new FlowBuilder<SimpleFlow>(JOB_NAME + "_fusedFlow")
+                .start(fusedScanStep(date));
+
+        // date 가 없으면 일자별 합계를 모으지 않으므로 통계 스텝을 만들지 않는다.
+        if (!StringUtils.hasText(date)) {
+            return flowBuilder.build();
+        }
+        return flowBuilder
+                .next(fusedStatisticsStep(date))
+                .build();
+    }
+
+    private Step fusedScanStep(String date) throws Exception {
+        YearMonth yearMonth = StringUtils.hasText(date) ? YearMonth.parse(date) : null;
+
+        return stepBuilderFactory.get(JOB_NAME + "_fusedScanStep")
+                .<UserOrderTotal, UserOrderTotal>chunk(CHUNK)
+                .reader(new FusedOrderScanItemReader(dataSource, yearMonth, FETCH_SIZE))
+                .processor(fusedItemProcessor())
+                .writer(fusedItemWriter())
+                .build();
+    }
+
+    private Step fusedStatisticsStep(String date) throws Exception {
+        return stepBuilderFactory.get(JOB_NAME + "_fusedStatisticsStep")
+                .<OrderStatistics, OrderStatistics>chunk(100)
+                .reader(fusedStatisticsItemReader(null, null))
+                .writer(orderStatisticsItemWriter(date))
+                .build();
+    }
+
+    @Bean(JOB_NAME + "_fusedStatisticsItemReader")
+    @StepScope
+    public ListItemReader<OrderStatistics> fusedStatisticsItemReader(
+            @Value("#{jobParameters[date]}") String date,
+            @Value("#{jobExecutionContext['" + FusedOrderScanItemReader.DAILY_TOTALS_KEY + "']}") String dailyTotals) {
+        return new ListItemReader<>(FusedOrderScanItemReader.toOrderStatistics(YearMonth.parse(date), dailyTotals));
+    }
+
+    private ItemProcessor<UserOrderTotal, UserOrderTotal> fusedItemProcessor() {
+        return total -> {
+            if (total.availableLevelUp()) {
+                return total;
+            }
+            return null;
+        };
+    }
+
+    private ItemWriter<UserOrderTotal> fusedItemWriter() {
+        JdbcBatchItemWriter<UserOrderTotal> itemWriter = new JdbcBatchItemWriterBuilder<UserOrderTotal>()
+                .dataSource(dataSource)
+                .sql("update user set level = ?, updated_date = ? where id = ?")
+                .itemPreparedStatementSetter((item, ps) -> {
+                    ps.setString(1, item.getNextLevel().name());
+                    ps.setDate(2, Date.valueOf(LocalDate.now()));
+                    ps.setLong(3, item.getUserId());
+                })
+                .build();
+        itemWriter.afterPropertiesSet();
+        return itemWriter;
+    }
+
     private Flow orderStatisticsFlow(String date) throws Exception {
         return new FlowBuilder<SimpleFlow>(JOB_NAME + "_orderStatisticsFlow")
                 .next(new JobParametersDecider("date"))
                 .on(JobParametersDecider.CONTINUE.getName())
-                .to(orderStatisticsStep(date))
+                .to(orderRollupStep())
+                .next(orderStatisticsStep(date))
+                .build();
+    }
+
+    private Step orderRollupStep() {
+        return stepBuilderFactory.get(JOB_NAME + "_orderRollupStep")
+                .tasklet(new DailyOrderRollupTasklet(dataSource, BUYER_SKETCH_ERROR, ORDER_COMMIT_GRACE))
                 .build();
     }
 
@@ -156,8 +241,8 @@ public class ParallelUserConfiguration {
 
     @Bean(JOB_NAME + "_userItemReader")
     @StepScope
-    public JpaPagingItemReader<User> itemReader(@Value("#{stepExecutionContext[minId]}") Long minId,
-                                                @Value("#{stepExecutionContext[maxId]}") Long maxId) throws Exception {
+    public PrefetchingItemReader<User> itemReader(@Value("#{stepExecutionContext[minId]}") Long minId,
+                                                   @Value("#{stepExecutionContext[maxId]}") Long maxId) throws Exception {
         Map<String, Object> parameters = new HashMap<>();
         parameters.put("minId", minId);
         parameters.put("maxId", maxId);
@@ -167,10 +252,11 @@ public class ParallelUserConfiguration {
                 .parameterValues(parameters)
                 .entityManagerFactory(entityManagerFactory)
                 .pageSize(CHUNK)
+                .transacted(false)
                 .name(JOB_NAME + "_userItemReader")
                 .build();
         itemReader.afterPropertiesSet();
-        return itemReader;
+        return new PrefetchingItemReader<>(itemReader, CHUNK, PREFETCH_DEPTH);
     }
 
     private ItemProcessor<User, User> itemProcessor() {
@@ -202,16 +288,15 @@ public class ParallelUserConfiguration {
         JdbcPagingItemReader<OrderStatistics> itemReader = new JdbcPagingItemReaderBuilder<OrderStatistics>()
                 .dataSource(dataSource)
                 .rowMapper((rs, rowNum) -> OrderStatistics.builder()
-                        .amount(rs.getString(1))
-                        .date(LocalDate.parse(rs.getString(2), DateTimeFormatter.ISO_DATE))
+                        .amount(rs.getLong(1))
+                        .date(rs.getDate(2).toLocalDate())
                         .build()
                 )
                 .pageSize(CHUNK)
                 .name(JOB_NAME + "_orderStatisticsItemReader")
-                .selectClause("sum(amount), created_date")
-                .fromClause("orders")
+                .selectClause("total_amount, created_date")
+                .fromClause("daily_order_rollup")
                 .whereClause("created_date >= :startDate and created_date <= :endDate")
-                .groupClause("created_date")
                 .parameterValues(parameters)
                 .sortKeys(sortKey)
                 .build();
@@ -223,18 +308,11 @@ public class ParallelUserConfiguration {
         YearMonth yearMonth = YearMonth.parse(date);
         String fileName = yearMonth.getYear() + "년_" + yearMonth.getMonthValue() + "월_일별_주문_금액.csv";
 
-        BeanWrapperFieldExtractor<OrderStatistics> fieldExtractor = new BeanWrapperFieldExtractor<>();
-        fieldExtractor.setNames(new String[]{"amount", "date"});
-
-        DelimitedLineAggregator<OrderStatistics> lineAggregator = new DelimitedLineAggregator<>();
-        lineAggregator.setDelimiter(",");
-        lineAggregator.setFieldExtractor(fieldExtractor);
-
         FlatFileItemWriter<OrderStatistics> itemWriter = new FlatFileItemWriterBuilder<OrderStatistics>()
                 .name(JOB_NAME + "_csvFileItemWriter")
                 .encoding(StandardCharsets.UTF_8.name())
                 .resource(new FileSystemResource("output/" + fileName))
-                .lineAggregator(lineAggregator)
+                .lineAggregator(new OrderStatisticsLineAggregator())
                 .headerCallback(writer -> writer.write("total_amount,date"))
                 .build();
         itemWriter.afterPropertiesSet();
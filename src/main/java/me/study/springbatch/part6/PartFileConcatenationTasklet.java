@@ -0,0 +1,127 @@
+package me.study.springbatch.part6;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.step.tasklet.Tasklet;
+import org.springframework.batch.item.file.FlatFileFooterCallback;
+import org.springframework.batch.item.file.FlatFileHeaderCallback;
+import org.springframework.batch.repeat.RepeatStatus;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * 파티션마다 따로 쓴 part 파일을 파티션 순서대로 하나의 파일로 합친다.
+ * part 파일 내용은 FileChannel.transferTo 로 옮기므로 heap 을 거치지 않고,
+ * header 와 footer 는 FlatFileItemWriter 와 같은 방식으로 한 번씩만 쓴다.
+ * part 파일은 스텝 트랜잭션이 커밋된 뒤에 지우므로 그 전에 실패하면 다시 실행해도 part 파일로 다시 합친다.
+ * part 파일이 모두 없고 결과 파일이 이미 있으면 이전 실행에서 합친 것으로 보고 건너뛴다.
+ */
+@Slf4j
+public class PartFileConcatenationTasklet implements Tasklet {
+
+    private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+
+    private final Path directory;
+    private final List<String> partitionNames;
+    private final Path target;
+    private final FlatFileHeaderCallback headerCallback;
+    private final FlatFileFooterCallback footerCallback;
+
+    public PartFileConcatenationTasklet(Path directory,
+                                        List<String> partitionNames,
+                                        Path target,
+                                        FlatFileHeaderCallback headerCallback,
+                                        FlatFileFooterCallback footerCallback) {
+        this.directory = directory;
+        this.partitionNames = partitionNames;
+        this.target = target;
+        this.headerCallback = headerCallback;
+        this.footerCallback = footerCallback;
+    }
+
+    public static Path partPath(Path directory, String partitionName) {
+        return directory.resolve(partitionName + ".part");
+    }
+
+    @Override
+    public RepeatStatus execute(StepContribution contribution, ChunkContext chunkContext) throws Exception {
+        if (Files.exists(target) && partitionNames.stream().noneMatch(x -> Files.exists(partPath(directory, x)))) {
+            log.info("{} is already concatenated", target);
+            return RepeatStatus.FINISHED;
+        }
+
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+
+        try (FileChannel out = FileChannel.open(temp,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            if (headerCallback != null) {
+                StringWriter header = new StringWriter();
+                headerCallback.writeHeader(header);
+                header.write(LINE_SEPARATOR);
+                write(out, header.toString());
+            }
+
+            for (String partitionName : partitionNames) {
+                Path part = partPath(directory, partitionName);
+                if (!Files.exists(part)) {
+                    throw new IllegalStateException("part file of " + partitionName + " does not exist: " + part);
+                }
+                try (FileChannel in = FileChannel.open(part, StandardOpenOption.READ)) {
+                    long size = in.size();
+                    long position = 0;
+                    while (position < size) {
+                        position += in.transferTo(position, size - position, out);
+                    }
+                }
+                contribution.incrementReadCount();
+            }
+
+            if (footerCallback != null) {
+                StringWriter footer = new StringWriter();
+                footerCallback.writeFooter(footer);
+                write(out, footer.toString());
+            }
+            out.force(true);
+        }
+
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                deleteParts();
+            }
+        });
+
+        log.info("{} part files are concatenated into {}", partitionNames.size(), target);
+        return RepeatStatus.FINISHED;
+    }
+
+    private void deleteParts() {
+        for (String partitionName : partitionNames) {
+            try {
+                Files.deleteIfExists(partPath(directory, partitionName));
+            } catch (IOException e) {
+                log.warn("failed to delete part file of {}", partitionName, e);
+            }
+        }
+    }
+
+    private static void write(FileChannel out, String value) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(value.getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+}
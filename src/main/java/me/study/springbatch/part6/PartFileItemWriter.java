@@ -0,0 +1,61 @@
+package me.study.springbatch.part6;
+
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ItemStreamWriter;
+import org.springframework.batch.item.file.FlatFileItemWriter;
+import org.springframework.batch.item.file.builder.FlatFileItemWriterBuilder;
+import org.springframework.batch.item.file.transform.LineAggregator;
+import org.springframework.core.io.FileSystemResource;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * 파티션 이름으로 정해지는 part 파일(PartFileConcatenationTasklet.partPath)에 header/footer 없이 쓰는 writer.
+ * 파티션마다 파일이 다르므로 lock 없이 동시에 쓸 수 있고, 재시작은 FlatFileItemWriter 와 같이 마지막 커밋 위치부터 이어 쓴다.
+ * header 와 footer 는 PartFileConcatenationTasklet 이 합칠 때 한 번만 쓴다.
+ */
+public class PartFileItemWriter<T> implements ItemStreamWriter<T> {
+
+    private final Path directory;
+    private final FlatFileItemWriter<T> delegate;
+
+    public PartFileItemWriter(Path directory, String partitionName, LineAggregator<T> lineAggregator, String name) {
+        this.directory = directory;
+        this.delegate = new FlatFileItemWriterBuilder<T>()
+                .name(name)
+                .encoding(StandardCharsets.UTF_8.name())
+                .resource(new FileSystemResource(PartFileConcatenationTasklet.partPath(directory, partitionName).toFile()))
+                .lineAggregator(lineAggregator)
+                .build();
+    }
+
+    @Override
+    public void write(List<? extends T> items) throws Exception {
+        delegate.write(items);
+    }
+
+    @Override
+    public void open(ExecutionContext executionContext) throws ItemStreamException {
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new ItemStreamException("failed to create part directory " + directory, e);
+        }
+        delegate.open(executionContext);
+    }
+
+    @Override
+    public void update(ExecutionContext executionContext) throws ItemStreamException {
+        delegate.update(executionContext);
+    }
+
+    @Override
+    public void close() throws ItemStreamException {
+        delegate.close();
+    }
+}
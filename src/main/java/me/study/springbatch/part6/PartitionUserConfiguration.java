@@ -2,11 +2,14 @@ package me.study.springbatch.part6;
 
 import lombok.extern.slf4j.Slf4j;
 import me.study.springbatch.part4.LevelUpJobExecutionListener;
+import me.study.springbatch.part4.PrefetchingItemReader;
 import me.study.springbatch.part4.SaveUserTasklet;
 import me.study.springbatch.part4.User;
+import me.study.springbatch.part4.UserOrdersFetchingItemReader;
 import me.study.springbatch.part4.UserRepository;
 import me.study.springbatch.part5.JobParametersDecider;
 import me.study.springbatch.part5.OrderStatistics;
+import me.study.springbatch.part5.OrderStatisticsLineAggregator;
 import org.springframework.batch.core.Job;
 import org.springframework.batch.core.Step;
 import org.springframework.batch.core.configuration.annotation.JobBuilderFactory;
@@ -16,20 +19,15 @@ import org.springframework.batch.core.configuration.annotation.StepScope;
 import org.springframework.batch.core.launch.support.RunIdIncrementer;
 import org.springframework.batch.core.partition.PartitionHandler;
 import org.springframework.batch.core.partition.support.TaskExecutorPartitionHandler;
-import org.springframework.batch.integration.async.AsyncItemProcessor;
 import org.springframework.batch.integration.async.AsyncItemWriter;
 import org.springframework.batch.item.ItemProcessor;
 import org.springframework.batch.item.ItemReader;
 import org.springframework.batch.item.ItemWriter;
 import org.springframework.batch.item.database.JdbcPagingItemReader;
-import org.springframework.batch.item.database.JpaPagingItemReader;
 import org.springframework.batch.item.database.Order;
 import org.springframework.batch.item.database.builder.JdbcPagingItemReaderBuilder;
-import org.springframework.batch.item.database.builder.JpaPagingItemReaderBuilder;
 import org.springframework.batch.item.file.FlatFileItemWriter;
 import org.springframework.batch.item.file.builder.FlatFileItemWriterBuilder;
-import org.springframework.batch.item.file.transform.BeanWrapperFieldExtractor;
-import org.springframework.batch.item.file.transform.DelimitedLineAggregator;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -39,9 +37,7 @@ import org.springframework.core.task.TaskExecutor;
 import javax.persistence.EntityManagerFactory;
 import javax.sql.DataSource;
 import java.nio.charset.StandardCharsets;
-import java.time.LocalDate;
 import java.time.YearMonth;
-import java.time.format.DateTimeFormatter;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.Future;
@@ -52,6 +48,8 @@ public class PartitionUserConfiguration {
 
     private static final String JOB_NAME = "partitionUserJob";
     private static final int CHUNK = 1_000;
+    private static final int PREFETCH_DEPTH = 2;
+    private static final int MAX_IN_FLIGHT = 200;
 
     private final JobBuilderFactory jobBuilderFactory;
     private final StepBuilderFactory stepBuilderFactory;
@@ -135,24 +133,16 @@ public class PartitionUserConfiguration {
 
     @Bean
     @StepScope
-    public JpaPagingItemReader<User> itemReader(@Value("#{stepExecutionContext[minId]}") Long minId,
-                                                @Value("#{stepExecutionContext[maxId]}") Long maxId) throws Exception {
-        Map<String, Object> parameters = new HashMap<>();
-        parameters.put("minId", minId);
-        parameters.put("maxId", maxId);
-
-        JpaPagingItemReader<User> itemReader = new JpaPagingItemReaderBuilder<User>()
-                .queryString("select u from User u where u.id between :minId and :maxId")
-                .parameterValues(parameters)
-                .entityManagerFactory(entityManagerFactory)
-                .pageSize(CHUNK)
-                .name(JOB_NAME + "_userItemReader")
-                .build();
-        itemReader.afterPropertiesSet();
-        return itemReader;
+    public PrefetchingItemReader<User> itemReader(@Value("#{stepExecutionContext[minId]}") Long minId,
+                                                   @Value("#{stepExecutionContext[maxId]}") Long maxId) throws Exception {
+        UserOrdersFetchingItemReader itemReader = new UserOrdersFetchingItemReader(entityManagerFactory,
+                minId, maxId, CHUNK, JOB_NAME + "_userItemReader");
+        return new PrefetchingItemReader<>(itemReader, CHUNK, PREFETCH_DEPTH);
     }
 
-    private AsyncItemProcessor<User, User> itemProcessor() {
+    @Bean(JOB_NAME + "_itemProcessor")
+    @StepScope
+    public BoundedAsyncItemProcessor<User, User> itemProcessor() {
         ItemProcessor<User, User> itemProcessor = user -> {
             if (user.availableLevelUp()) {
                 return user;
@@ -160,10 +150,7 @@ public class PartitionUserConfiguration {
             return null;
         };
 
-        AsyncItemProcessor<User, User> asyncItemProcessor = new AsyncItemProcessor<>();
-        asyncItemProcessor.setDelegate(itemProcessor);
-        asyncItemProcessor.setTaskExecutor(taskExecutor);
-        return asyncItemProcessor;
+        return new BoundedAsyncItemProcessor<>(itemProcessor, taskExecutor, MAX_IN_FLIGHT, true);
     }
 
     private AsyncItemWriter<User> itemWriter() {
@@ -190,8 +177,8 @@ public class PartitionUserConfiguration {
         JdbcPagingItemReader<OrderStatistics> itemReader = new JdbcPagingItemReaderBuilder<OrderStatistics>()
                 .dataSource(dataSource)
                 .rowMapper((rs, rowNum) -> OrderStatistics.builder()
-                        .amount(rs.getString(1))
-                        .date(LocalDate.parse(rs.getString(2), DateTimeFormatter.ISO_DATE))
+                        .amount(rs.getLong(1))
+                        .date(rs.getDate(2).toLocalDate())
                         .build()
                 )
                 .pageSize(CHUNK)
@@ -211,18 +198,11 @@ public class PartitionUserConfiguration {
         YearMonth yearMonth = YearMonth.parse(date);
         String fileName = yearMonth.getYear() + "년_" + yearMonth.getMonthValue() + "월_일별_주문_금액.csv";
 
-        BeanWrapperFieldExtractor<OrderStatistics> fieldExtractor = new BeanWrapperFieldExtractor<>();
-        fieldExtractor.setNames(new String[]{"amount", "date"});
-
-        DelimitedLineAggregator<OrderStatistics> lineAggregator = new DelimitedLineAggregator<>();
-        lineAggregator.setDelimiter(",");
-        lineAggregator.setFieldExtractor(fieldExtractor);
-
         FlatFileItemWriter<OrderStatistics> itemWriter = new FlatFileItemWriterBuilder<OrderStatistics>()
                 .name(JOB_NAME + "_csvFileItemWriter")
                 .encoding(StandardCharsets.UTF_8.name())
                 .resource(new FileSystemResource("output/" + fileName))
-                .lineAggregator(lineAggregator)
+                .lineAggregator(new OrderStatisticsLineAggregator())
                 .headerCallback(writer -> writer.write("total_amount,date"))
                 .build();
         itemWriter.afterPropertiesSet();
@@ -0,0 +1,186 @@
+package me.study.springbatch.part6;
+
+import org.springframework.batch.core.ChunkListener;
+import org.springframework.batch.core.ItemWriteListener;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStream;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ItemStreamWriter;
+import org.springframework.batch.item.ItemWriter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 멀티 스레드 스텝에서 chunk 가 커밋되는 순서와 상관없이 읽은 순서대로 delegate 에 쓴다.
+ * sequence 는 SequencingItemReader 가 붙이고 빠진 번호가 없어야 한다. processor 가 item 을 filter 하면
+ * 그 sequence 를 기다리다 waitTimeout 뒤에 실패하므로, processor 는 SequencedItemProcessor 로 감싸 빈 item 을 넘긴다.
+ * 순서가 앞선 item 이 아직 쓰이지 않았으면 최대 maxBuffered 건까지 보관하고,
+ * 그 이상이면 앞선 item 이 쓰일 때까지 최대 waitTimeout 동안 기다린다.
+ * 다른 chunk 가 실패하면(onWriteError, afterChunkError, close) 기다리던 스레드를 모두 깨워 실패시키고,
+ * 닫을 때 쓰지 못한 item 이 남아 있으면 단일 스레드 결과와 달라지므로 ItemStreamException 을 던진다.
+ * delegate 가 FlatFileItemWriter 라면 커밋 순서대로 파일에 기록되지 않도록 transactional(false) 로 만들어야 한다.
+ */
+public class ReorderingItemWriter<T> implements ItemStreamWriter<SequencedItem<T>>,
+        ItemWriteListener<SequencedItem<T>>, ChunkListener {
+
+    private static final long DEFAULT_WAIT_TIMEOUT_MILLIS = 60_000;
+
+    private final ItemWriter<T> delegate;
+    private final int maxBuffered;
+    private final long waitTimeoutNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition drained = lock.newCondition();
+    private final TreeMap<Long, T> buffer = new TreeMap<>();
+    private long nextSequence;
+    private boolean failed;
+
+    public ReorderingItemWriter(ItemWriter<T> delegate, int maxBuffered) {
+        this(delegate, maxBuffered, DEFAULT_WAIT_TIMEOUT_MILLIS);
+    }
+
+    public ReorderingItemWriter(ItemWriter<T> delegate, int maxBuffered, long waitTimeoutMillis) {
+        this.delegate = delegate;
+        this.maxBuffered = maxBuffered;
+        this.waitTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(waitTimeoutMillis);
+    }
+
+    @Override
+    public void write(List<? extends SequencedItem<T>> items) throws Exception {
+        if (items.isEmpty()) {
+            return;
+        }
+
+        lock.lockInterruptibly();
+        try {
+            long remaining = waitTimeoutNanos;
+            while (!containsNext(items) && buffer.size() + items.size() > maxBuffered) {
+                if (failed) {
+                    throw new ItemStreamException("another chunk failed before sequence " + nextSequence + " was written");
+                }
+                if (remaining <= 0) {
+                    throw new ItemStreamException("timed out waiting for sequence " + nextSequence);
+                }
+                remaining = drained.awaitNanos(remaining);
+            }
+            if (failed) {
+                throw new ItemStreamException("another chunk failed before sequence " + nextSequence + " was written");
+            }
+
+            for (SequencedItem<T> item : items) {
+                buffer.put(item.getSequence(), item.getItem());
+            }
+
+            List<T> ordered = new ArrayList<>();
+            while (!buffer.isEmpty() && buffer.firstKey() == nextSequence) {
+                T item = buffer.pollFirstEntry().getValue();
+                if (item != null) {
+                    ordered.add(item);
+                }
+                nextSequence++;
+            }
+
+            if (!ordered.isEmpty()) {
+                delegate.write(ordered);
+            }
+            drained.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void open(ExecutionContext executionContext) throws ItemStreamException {
+        lock.lock();
+        try {
+            buffer.clear();
+            nextSequence = 0;
+            failed = false;
+        } finally {
+            lock.unlock();
+        }
+        if (delegate instanceof ItemStream) {
+            ((ItemStream) delegate).open(executionContext);
+        }
+    }
+
+    @Override
+    public void update(ExecutionContext executionContext) throws ItemStreamException {
+        if (delegate instanceof ItemStream) {
+            ((ItemStream) delegate).update(executionContext);
+        }
+    }
+
+    @Override
+    public void close() throws ItemStreamException {
+        int discarded;
+        long waitingFor;
+        lock.lock();
+        try {
+            discarded = buffer.size();
+            waitingFor = nextSequence;
+            buffer.clear();
+            failed = true;
+            drained.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        if (delegate instanceof ItemStream) {
+            ((ItemStream) delegate).close();
+        }
+        if (discarded > 0) {
+            throw new ItemStreamException(discarded + " items were not written while waiting for sequence " + waitingFor);
+        }
+    }
+
+    @Override
+    public void beforeWrite(List<? extends SequencedItem<T>> items) {
+    }
+
+    @Override
+    public void afterWrite(List<? extends SequencedItem<T>> items) {
+    }
+
+    @Override
+    public void onWriteError(Exception exception, List<? extends SequencedItem<T>> items) {
+        fail();
+    }
+
+    @Override
+    public void beforeChunk(ChunkContext context) {
+    }
+
+    @Override
+    public void afterChunk(ChunkContext context) {
+    }
+
+    @Override
+    public void afterChunkError(ChunkContext context) {
+        fail();
+    }
+
+    private void fail() {
+        lock.lock();
+        try {
+            failed = true;
+            drained.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean containsNext(List<? extends SequencedItem<T>> items) {
+        for (SequencedItem<T> item : items) {
+            if (item.getSequence() == nextSequence) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
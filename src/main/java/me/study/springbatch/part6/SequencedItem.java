@@ -0,0 +1,19 @@
+package me.study.springbatch.part6;
+
+import lombok.Getter;
+
+@Getter
+public class SequencedItem<T> {
+
+    private final long sequence;
+    private final T item;
+
+    public SequencedItem(long sequence, T item) {
+        this.sequence = sequence;
+        this.item = item;
+    }
+
+    public boolean isFiltered() {
+        return item == null;
+    }
+}
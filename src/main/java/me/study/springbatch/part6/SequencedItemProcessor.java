@@ -0,0 +1,21 @@
+package me.study.springbatch.part6;
+
+import org.springframework.batch.item.ItemProcessor;
+
+/**
+ * 필터링된 item 도 빈 SequencedItem 으로 넘겨서 ReorderingItemWriter 가 다음 sequence 를 기다리지 않게 한다.
+ */
+public class SequencedItemProcessor<I, O> implements ItemProcessor<SequencedItem<I>, SequencedItem<O>> {
+
+    private final ItemProcessor<I, O> delegate;
+
+    public SequencedItemProcessor(ItemProcessor<I, O> delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public SequencedItem<O> process(SequencedItem<I> item) throws Exception {
+        O result = item.isFiltered() ? null : delegate.process(item.getItem());
+        return new SequencedItem<>(item.getSequence(), result);
+    }
+}
@@ -0,0 +1,51 @@
+package me.study.springbatch.part6;
+
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemReader;
+import org.springframework.batch.item.ItemStream;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ItemStreamReader;
+
+/**
+ * 읽은 순서대로 sequence 를 붙여서 ReorderingItemWriter 가 원래 순서로 다시 정렬할 수 있게 한다.
+ */
+public class SequencingItemReader<T> implements ItemStreamReader<SequencedItem<T>> {
+
+    private final ItemReader<T> delegate;
+    private long sequence;
+
+    public SequencingItemReader(ItemReader<T> delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public synchronized SequencedItem<T> read() throws Exception {
+        T item = delegate.read();
+        if (item == null) {
+            return null;
+        }
+        return new SequencedItem<>(sequence++, item);
+    }
+
+    @Override
+    public synchronized void open(ExecutionContext executionContext) throws ItemStreamException {
+        sequence = 0;
+        if (delegate instanceof ItemStream) {
+            ((ItemStream) delegate).open(executionContext);
+        }
+    }
+
+    @Override
+    public void update(ExecutionContext executionContext) throws ItemStreamException {
+        if (delegate instanceof ItemStream) {
+            ((ItemStream) delegate).update(executionContext);
+        }
+    }
+
+    @Override
+    public void close() throws ItemStreamException {
+        if (delegate instanceof ItemStream) {
+            ((ItemStream) delegate).close();
+        }
+    }
+}
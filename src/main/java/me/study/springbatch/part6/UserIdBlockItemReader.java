@@ -0,0 +1,286 @@
+package me.study.springbatch.part6;
+
+import me.study.springbatch.part4.User;
+import me.study.springbatch.part4.UserRepository;
+import org.springframework.batch.core.ChunkListener;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemReader;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ItemStreamSupport;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * 멀티 스레드 스텝용 User reader.
+ * 각 chunk 스레드는 공유 커서에서 겹치지 않는 id 구간(block)을 가져가 읽고,
+ * 커밋된 block 목록과 일부만 커밋된 block 의 마지막 id 를 ExecutionContext 에 저장한다.
+ * 재시작 시에는 끝나지 않은 block 만 다시 읽는다.
+ */
+public class UserIdBlockItemReader extends ItemStreamSupport implements ItemReader<User>, ChunkListener {
+
+    private static final String MIN_ID = "minId";
+    private static final String MAX_ID = "maxId";
+    private static final String COMPLETED_BLOCKS = "completedBlocks";
+    private static final String COMMITTED_IDS = "committedIds";
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final UserRepository userRepository;
+    private final int blockSize;
+
+    private final Object monitor = new Object();
+    private final Set<Integer> completedBlocks = ConcurrentHashMap.newKeySet();
+    private final Map<Integer, Long> committedIds = new ConcurrentHashMap<>();
+    private final Deque<Block> handedBack = new ArrayDeque<>();
+    private final ThreadLocal<ChunkState> chunkState = ThreadLocal.withInitial(ChunkState::new);
+
+    private long minId;
+    private long maxId;
+    private int blockCount;
+    private int nextBlock;
+    private int outstanding;
+    private volatile boolean failed;
+
+    public UserIdBlockItemReader(EntityManagerFactory entityManagerFactory,
+                                 UserRepository userRepository,
+                                 int blockSize,
+                                 String name) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.userRepository = userRepository;
+        this.blockSize = blockSize;
+        setName(name);
+    }
+
+    @Override
+    public User read() throws Exception {
+        ChunkState state = chunkState.get();
+
+        while (true) {
+            if (state.current == null) {
+                Block block = claim();
+                if (block == null) {
+                    return null;
+                }
+                state.current = block;
+                state.touched.add(block);
+            }
+
+            User user = state.current.next();
+            if (state.current.isExhausted()) {
+                release();
+                state.current = null;
+            }
+            if (user != null) {
+                return user;
+            }
+        }
+    }
+
+    @Override
+    public void open(ExecutionContext executionContext) throws ItemStreamException {
+        synchronized (monitor) {
+            completedBlocks.clear();
+            committedIds.clear();
+            handedBack.clear();
+            nextBlock = 0;
+            outstanding = 0;
+            failed = false;
+
+            if (executionContext.containsKey(getExecutionContextKey(MIN_ID))) {
+                minId = executionContext.getLong(getExecutionContextKey(MIN_ID));
+                maxId = executionContext.getLong(getExecutionContextKey(MAX_ID));
+                restoreCompletedBlocks(executionContext.getString(getExecutionContextKey(COMPLETED_BLOCKS), ""));
+                restoreCommittedIds(executionContext.getString(getExecutionContextKey(COMMITTED_IDS), ""));
+            } else {
+                Long foundMinId = userRepository.findMinId();
+                Long foundMaxId = userRepository.findMaxId();
+                if (foundMinId == null || foundMaxId == null) {
+                    // user 가 없으면 읽을 block 도 없다.
+                    blockCount = 0;
+                    return;
+                }
+                minId = foundMinId;
+                maxId = foundMaxId;
+            }
+
+            blockCount = (int) ((maxId - minId) / blockSize + 1);
+        }
+    }
+
+    @Override
+    public void update(ExecutionContext executionContext) throws ItemStreamException {
+        saveState(executionContext);
+    }
+
+    @Override
+    public void beforeChunk(ChunkContext context) {
+    }
+
+    @Override
+    public void afterChunk(ChunkContext context) {
+        ChunkState state = chunkState.get();
+        chunkState.remove();
+
+        for (Block block : state.touched) {
+            if (block.isExhausted()) {
+                completedBlocks.add(block.index);
+                committedIds.remove(block.index);
+            } else if (block.lastReadId != null) {
+                committedIds.put(block.index, block.lastReadId);
+            }
+        }
+
+        if (state.current != null) {
+            synchronized (monitor) {
+                handedBack.add(state.current);
+                monitor.notifyAll();
+            }
+        }
+
+        // 커밋이 끝난 뒤에 기록하므로 다음 커밋이나 스텝 종료 시점에 저장된다.
+        saveState(context.getStepContext().getStepExecution().getExecutionContext());
+    }
+
+    @Override
+    public void afterChunkError(ChunkContext context) {
+        chunkState.remove();
+        synchronized (monitor) {
+            failed = true;
+            monitor.notifyAll();
+        }
+    }
+
+    private Block claim() throws InterruptedException {
+        int index;
+        long startId;
+
+        synchronized (monitor) {
+            while (true) {
+                if (failed) {
+                    return null;
+                }
+
+                Block block = handedBack.poll();
+                if (block != null) {
+                    return block;
+                }
+
+                while (nextBlock < blockCount && completedBlocks.contains(nextBlock)) {
+                    nextBlock++;
+                }
+                if (nextBlock < blockCount) {
+                    index = nextBlock++;
+                    outstanding++;
+                    break;
+                }
+
+                // 다른 스레드가 일부만 읽은 block 을 돌려줄 수 있으므로 모두 끝날 때까지 기다린다.
+                if (outstanding == 0) {
+                    return null;
+                }
+                monitor.wait();
+            }
+        }
+
+        long blockStartId = minId + (long) index * blockSize;
+        long endId = Math.min(blockStartId + blockSize - 1, maxId);
+        Long committedId = committedIds.get(index);
+        startId = committedId == null ? blockStartId : committedId + 1;
+
+        return new Block(index, load(startId, endId));
+    }
+
+    private void release() {
+        synchronized (monitor) {
+            outstanding--;
+            monitor.notifyAll();
+        }
+    }
+
+    private List<User> load(long startId, long endId) {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            return new ArrayList<>(entityManager
+                    .createQuery("select u from User u where u.id between :startId and :endId order by u.id", User.class)
+                    .setParameter("startId", startId)
+                    .setParameter("endId", endId)
+                    .getResultList());
+        } finally {
+            entityManager.close();
+        }
+    }
+
+    private void saveState(ExecutionContext executionContext) {
+        if (blockCount == 0) {
+            return;
+        }
+
+        executionContext.putLong(getExecutionContextKey(MIN_ID), minId);
+        executionContext.putLong(getExecutionContextKey(MAX_ID), maxId);
+        executionContext.putString(getExecutionContextKey(COMPLETED_BLOCKS), completedBlocks.stream()
+                .sorted()
+                .map(String::valueOf)
+                .collect(Collectors.joining(",")));
+        executionContext.putString(getExecutionContextKey(COMMITTED_IDS), committedIds.entrySet().stream()
+                .map(x -> x.getKey() + ":" + x.getValue())
+                .collect(Collectors.joining(",")));
+    }
+
+    private void restoreCompletedBlocks(String value) {
+        for (String index : value.split(",")) {
+            if (!index.isEmpty()) {
+                completedBlocks.add(Integer.parseInt(index));
+            }
+        }
+    }
+
+    private void restoreCommittedIds(String value) {
+        for (String entry : value.split(",")) {
+            if (!entry.isEmpty()) {
+                String[] pair = entry.split(":");
+                committedIds.put(Integer.parseInt(pair[0]), Long.parseLong(pair[1]));
+            }
+        }
+    }
+
+    private static class Block {
+
+        private final int index;
+        private final List<User> users;
+        private int position;
+        private Long lastReadId;
+
+        private Block(int index, List<User> users) {
+            this.index = index;
+            this.users = users;
+        }
+
+        private User next() {
+            if (isExhausted()) {
+                return null;
+            }
+            User user = users.set(position++, null);
+            lastReadId = user.getId();
+            return user;
+        }
+
+        private boolean isExhausted() {
+            return position >= users.size();
+        }
+    }
+
+    private static class ChunkState {
+
+        private Block current;
+        private final List<Block> touched = new ArrayList<>();
+    }
+}
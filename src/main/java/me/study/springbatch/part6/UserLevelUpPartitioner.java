@@ -17,8 +17,14 @@ public class UserLevelUpPartitioner implements Partitioner {
 
     @Override
     public Map<String, ExecutionContext> partition(int gridSize) {
-        long minId = userRepository.findMinId();    // 1
-        long maxId = userRepository.findMaxId();    // 400000
+        Long foundMinId = userRepository.findMinId();
+        Long foundMaxId = userRepository.findMaxId();
+        if (foundMinId == null || foundMaxId == null) {
+            return new HashMap<>();
+        }
+
+        long minId = foundMinId;    // 1
+        long maxId = foundMaxId;    // 400000
 
         long targetSize = (maxId - minId) / gridSize + 1;   // 5000
 
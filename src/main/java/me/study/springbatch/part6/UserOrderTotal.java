@@ -0,0 +1,26 @@
+package me.study.springbatch.part6;
+
+import lombok.Getter;
+import me.study.springbatch.part4.User;
+
+@Getter
+public class UserOrderTotal {
+
+    private final long userId;
+    private final User.Level level;
+    private final long totalAmount;
+
+    public UserOrderTotal(long userId, User.Level level, long totalAmount) {
+        this.userId = userId;
+        this.level = level;
+        this.totalAmount = totalAmount;
+    }
+
+    public boolean availableLevelUp() {
+        return level.availableLevelUp(totalAmount);
+    }
+
+    public User.Level getNextLevel() {
+        return level.getNextLevel(totalAmount);
+    }
+}
@@ -0,0 +1,349 @@
+package me.study.springbatch.part3;
+
+import me.study.springbatch.TestConfiguration;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.ItemProcessListener;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.SkipListener;
+import org.springframework.batch.core.Step;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.configuration.annotation.JobBuilderFactory;
+import org.springframework.batch.core.configuration.annotation.StepBuilderFactory;
+import org.springframework.batch.core.configuration.annotation.StepScope;
+import org.springframework.batch.core.launch.JobLauncher;
+import org.springframework.batch.core.launch.support.RunIdIncrementer;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.batch.item.support.ListItemReader;
+import org.springframework.batch.test.JobLauncherTestUtils;
+import org.springframework.batch.test.context.SpringBatchTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.test.context.ContextConfiguration;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBatchTest
+@ContextConfiguration(classes = {BatchingStepBuilderTest.BisectionJobConfiguration.class, TestConfiguration.class})
+class BatchingStepBuilderTest {
+
+    private static final int ITEM_COUNT = 1_000;
+    private static final int CHUNK = 100;
+
+    @Autowired
+    private JobLauncherTestUtils jobLauncherTestUtils;
+
+    @Autowired
+    private BadItemWriter itemWriter;
+
+    @Autowired
+    private RecordingSkipListener skipListener;
+
+    @Autowired
+    private JobBuilderFactory jobBuilderFactory;
+
+    @Autowired
+    private StepBuilderFactory stepBuilderFactory;
+
+    @Autowired
+    private JobLauncher jobLauncher;
+
+    @ParameterizedTest
+    @ValueSource(longs = {1L, 7L, 42L, 2021L})
+    void test_bisection_skips_only_bad_items(long seed) throws Exception {
+        // given
+        Random random = new Random(seed);
+        Set<Integer> badItems = new HashSet<>();
+        int badCount = 1 + random.nextInt(10);
+        while (badItems.size() < badCount) {
+            badItems.add(random.nextInt(ITEM_COUNT));
+        }
+        itemWriter.reset(badItems);
+        skipListener.reset();
+
+        // when
+        JobExecution jobExecution = jobLauncherTestUtils.launchJob();
+
+        // then
+        StepExecution stepExecution = jobExecution.getStepExecutions().iterator().next();
+        Set<Integer> expected = IntStream.range(0, ITEM_COUNT)
+                .filter(x -> !badItems.contains(x))
+                .boxed()
+                .collect(Collectors.toSet());
+
+        assertThat(jobExecution.getStatus()).isEqualTo(BatchStatus.COMPLETED);
+        assertThat(itemWriter.getWritten()).hasSize(expected.size())
+                .containsExactlyInAnyOrderElementsOf(expected);
+        assertThat(stepExecution.getReadCount()).isEqualTo(ITEM_COUNT);
+        assertThat(stepExecution.getWriteCount()).isEqualTo(expected.size());
+        assertThat(stepExecution.getWriteSkipCount()).isEqualTo(badCount);
+        assertThat(skipListener.getSkipped()).containsExactlyInAnyOrderElementsOf(badItems);
+
+        // 실패한 구간만 반씩 나누므로 롤백은 bad item 마다 트리 깊이 + 1 번을 넘지 않는다.
+        int depth = 32 - Integer.numberOfLeadingZeros(CHUNK - 1);
+        assertThat(stepExecution.getRollbackCount()).isLessThanOrEqualTo(badCount * (depth + 1));
+    }
+
+    @Test
+    void test_exception_handler_receives_everything_but_bisection() throws Exception {
+        // given
+        List<Throwable> handled = new CopyOnWriteArrayList<>();
+        BadItemWriter badItemWriter = new BadItemWriter();
+        badItemWriter.reset(Collections.singleton(3));
+
+        Step step = new BatchingStepBuilder<>(stepBuilderFactory.get("exceptionHandlerStep")
+                .<Integer, Integer>chunk(10)
+                .reader(new ListItemReader<>(IntStream.range(0, 30).boxed().collect(Collectors.toList())))
+                .writer(badItemWriter))
+                .chunkProcessor(ItemProcessorChunkAdapter.<Integer, Integer>of(item -> {
+                    if (item == 25) {
+                        throw new IllegalStateException("not skippable: " + item);
+                    }
+                    return item;
+                }))
+                .exceptionHandler((context, throwable) -> {
+                    handled.add(throwable);
+                    throw throwable;
+                })
+                .skip(IllegalArgumentException.class)
+                .skipLimit(10)
+                .build();
+        Job job = jobBuilderFactory.get("exceptionHandlerJob")
+                .start(step)
+                .build();
+
+        // when
+        JobExecution jobExecution = jobLauncher.run(job, jobLauncherTestUtils.getUniqueJobParameters());
+
+        // then
+        // 쓰기 실패는 bisection 으로 skip 되고, skip 대상이 아닌 처리 예외만 지정한 handler 까지 온다.
+        StepExecution stepExecution = jobExecution.getStepExecutions().iterator().next();
+        assertThat(jobExecution.getStatus()).isEqualTo(BatchStatus.FAILED);
+        assertThat(handled).hasSize(1);
+        assertThat(handled.get(0)).isInstanceOf(IllegalStateException.class);
+        assertThat(stepExecution.getWriteSkipCount()).isEqualTo(1);
+        assertThat(badItemWriter.getWritten()).containsExactlyInAnyOrderElementsOf(IntStream.range(0, 20)
+                .filter(x -> x != 3)
+                .boxed()
+                .collect(Collectors.toList()));
+    }
+
+    @Test
+    void test_chunk_processor_filters_and_skips_in_one_chunk() throws Exception {
+        // given
+        Person first = new Person("a", 30, "서울");
+        Person young = new Person("b", 10, "서울");
+        Person noName = new Person("", 40, "서울");
+        Person second = new Person("c", 25, "서울");
+        Person duplicate = new Person("a", 35, "서울");
+        Person other = new Person("d", 15, "서울");
+        Person third = new Person("e", 50, "서울");
+        List<Person> persons = Arrays.asList(first, young, noName, second, duplicate, other, third);
+
+        List<String> written = new CopyOnWriteArrayList<>();
+        RecordingProcessListener listener = new RecordingProcessListener();
+
+        // 중복 검사 뒤에서 실패하므로 item 하나씩 다시 처리할 때 중복 검사도 다시 실행된다.
+        ChunkItemProcessor<Person, String> chunkProcessor = ItemProcessorChunkAdapter.<Person, Person>of(
+                        person -> person.getAge() < 20 ? null : person)
+                .andThen(new DuplicateValidationProcessor<Person>(Person::getName, false))
+                .andThen(items -> {
+                    List<String> outputs = new ArrayList<>(items.size());
+                    for (Person person : items) {
+                        if (!person.isNotEmptyName()) {
+                            throw new NotFoundNameException();
+                        }
+                        outputs.add(person.getName() + ":" + person.getAge());
+                    }
+                    return outputs;
+                });
+
+        Step step = new BatchingStepBuilder<>(stepBuilderFactory.get("chunkProcessorStep")
+                .<Person, String>chunk(10)
+                .reader(new ListItemReader<>(persons))
+                .writer(written::addAll))
+                .chunkProcessor(chunkProcessor)
+                .skip(NotFoundNameException.class)
+                .skipLimit(1)
+                .listener((SkipListener<Person, String>) listener)
+                .build();
+        Job job = jobBuilderFactory.get("chunkProcessorJob")
+                .start(step)
+                .build();
+
+        // when
+        JobExecution jobExecution = jobLauncher.run(job, jobLauncherTestUtils.getUniqueJobParameters());
+
+        // then
+        StepExecution stepExecution = jobExecution.getStepExecutions().iterator().next();
+        assertThat(jobExecution.getStatus()).isEqualTo(BatchStatus.COMPLETED);
+        assertThat(written).containsExactly("a:30", "c:25", "e:50");
+        assertThat(stepExecution.getReadCount()).isEqualTo(7);
+        assertThat(stepExecution.getFilterCount()).isEqualTo(3);
+        assertThat(stepExecution.getProcessSkipCount()).isEqualTo(1);
+        assertThat(stepExecution.getWriteCount()).isEqualTo(3);
+
+        assertThat(listener.getProcessed()).containsExactly(first, young, second, duplicate, other, third);
+        assertThat(listener.getProcessErrors()).containsExactly(noName);
+        assertThat(listener.getSkippedInProcess()).containsExactly(noName);
+    }
+
+    @Configuration
+    static class BisectionJobConfiguration {
+
+        @Bean
+        public Job bisectionJob(JobBuilderFactory jobBuilderFactory, Step bisectionStep) {
+            return jobBuilderFactory.get("bisectionJob")
+                    .incrementer(new RunIdIncrementer())
+                    .start(bisectionStep)
+                    .build();
+        }
+
+        @Bean
+        public Step bisectionStep(StepBuilderFactory stepBuilderFactory,
+                                  ListItemReader<Integer> bisectionItemReader,
+                                  BadItemWriter itemWriter,
+                                  RecordingSkipListener skipListener) {
+            return new BatchingStepBuilder<>(stepBuilderFactory.get("bisectionStep")
+                    .<Integer, Integer>chunk(CHUNK)
+                    .reader(bisectionItemReader)
+                    .writer(itemWriter))
+                    .chunkProcessor(ItemProcessorChunkAdapter.<Integer, Integer>of(item -> item))
+                    .skip(IllegalArgumentException.class)
+                    .skipLimit(ITEM_COUNT)
+                    .listener(skipListener)
+                    .build();
+        }
+
+        @Bean
+        @StepScope
+        public ListItemReader<Integer> bisectionItemReader() {
+            return new ListItemReader<>(IntStream.range(0, ITEM_COUNT).boxed().collect(Collectors.toList()));
+        }
+
+        @Bean
+        public BadItemWriter badItemWriter() {
+            return new BadItemWriter();
+        }
+
+        @Bean
+        public RecordingSkipListener recordingSkipListener() {
+            return new RecordingSkipListener();
+        }
+    }
+
+    /**
+     * bad item 이 하나라도 섞인 목록은 아무것도 남기지 않고 실패해 트랜잭션 롤백을 흉내 낸다.
+     */
+    static class BadItemWriter implements ItemWriter<Integer> {
+
+        private final List<Integer> written = new CopyOnWriteArrayList<>();
+        private Set<Integer> badItems = new HashSet<>();
+
+        void reset(Set<Integer> badItems) {
+            this.badItems = badItems;
+            this.written.clear();
+        }
+
+        List<Integer> getWritten() {
+            return written;
+        }
+
+        @Override
+        public void write(List<? extends Integer> items) {
+            for (Integer item : items) {
+                if (badItems.contains(item)) {
+                    throw new IllegalArgumentException("bad item: " + item);
+                }
+            }
+            written.addAll(items);
+        }
+    }
+
+    static class RecordingSkipListener implements SkipListener<Integer, Integer> {
+
+        private final List<Integer> skipped = new ArrayList<>();
+
+        void reset() {
+            skipped.clear();
+        }
+
+        List<Integer> getSkipped() {
+            return skipped;
+        }
+
+        @Override
+        public void onSkipInRead(Throwable t) {
+        }
+
+        @Override
+        public void onSkipInWrite(Integer item, Throwable t) {
+            skipped.add(item);
+        }
+
+        @Override
+        public void onSkipInProcess(Integer item, Throwable t) {
+        }
+    }
+
+    static class RecordingProcessListener implements SkipListener<Person, String>, ItemProcessListener<Person, String> {
+
+        private final List<Person> processed = new ArrayList<>();
+        private final List<Person> processErrors = new ArrayList<>();
+        private final List<Person> skippedInProcess = new ArrayList<>();
+
+        List<Person> getProcessed() {
+            return processed;
+        }
+
+        List<Person> getProcessErrors() {
+            return processErrors;
+        }
+
+        List<Person> getSkippedInProcess() {
+            return skippedInProcess;
+        }
+
+        @Override
+        public void beforeProcess(Person item) {
+        }
+
+        @Override
+        public void afterProcess(Person item, String result) {
+            processed.add(item);
+        }
+
+        @Override
+        public void onProcessError(Person item, Exception e) {
+            processErrors.add(item);
+        }
+
+        @Override
+        public void onSkipInRead(Throwable t) {
+        }
+
+        @Override
+        public void onSkipInWrite(String item, Throwable t) {
+        }
+
+        @Override
+        public void onSkipInProcess(Person item, Throwable t) {
+            skippedInProcess.add(item);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package me.study.springbatch.part3;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.item.ExecutionContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CustomItemReaderTest {
+
+    private static final int ITEM_COUNT = 10_000;
+    private static final int THREADS = 8;
+
+    @Test
+    void test_multi_thread_reads_every_item_once() throws Exception {
+        // given
+        CustomItemReader<Integer> itemReader = new CustomItemReader<>(items(ITEM_COUNT), 7);
+        itemReader.open(new ExecutionContext());
+        ConcurrentLinkedQueue<Integer> read = new ConcurrentLinkedQueue<>();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+        // when
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (Integer item = itemReader.read(); item != null; item = itemReader.read()) {
+                    read.add(item);
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        // then
+        assertThat(read).hasSize(ITEM_COUNT)
+                .containsExactlyInAnyOrderElementsOf(items(ITEM_COUNT));
+    }
+
+    @Test
+    void test_unfinished_block_of_other_thread_is_drained() throws Exception {
+        // given
+        CustomItemReader<Integer> itemReader = new CustomItemReader<>(items(25), 10);
+        itemReader.open(new ExecutionContext());
+
+        // 다른 스레드가 첫 block 에서 하나만 읽고 더 이상 읽지 않는다.
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Integer first = executor.submit(itemReader::read).get(10, TimeUnit.SECONDS);
+        executor.shutdown();
+
+        // when
+        List<Integer> read = new ArrayList<>();
+        for (Integer item = itemReader.read(); item != null; item = itemReader.read()) {
+            read.add(item);
+        }
+
+        // then
+        assertThat(first).isEqualTo(1);
+        assertThat(read).hasSize(24)
+                .containsExactlyInAnyOrderElementsOf(IntStream.rangeClosed(2, 25).boxed().collect(Collectors.toList()));
+    }
+
+    @Test
+    void test_restart_from_saved_position() throws Exception {
+        // given
+        ExecutionContext executionContext = new ExecutionContext();
+        CustomItemReader<Integer> itemReader = new CustomItemReader<>(items(10));
+        itemReader.open(executionContext);
+        for (int i = 0; i < 4; i++) {
+            itemReader.read();
+        }
+        itemReader.update(executionContext);
+        itemReader.close();
+
+        // when
+        CustomItemReader<Integer> restarted = new CustomItemReader<>(items(10));
+        restarted.open(executionContext);
+        List<Integer> read = new ArrayList<>();
+        for (Integer item = restarted.read(); item != null; item = restarted.read()) {
+            read.add(item);
+        }
+
+        // then
+        assertThat(executionContext.getInt("CustomItemReader.position")).isEqualTo(4);
+        assertThat(read).containsExactly(5, 6, 7, 8, 9, 10);
+    }
+
+    private List<Integer> items(int count) {
+        return IntStream.rangeClosed(1, count).boxed().collect(Collectors.toList());
+    }
+}
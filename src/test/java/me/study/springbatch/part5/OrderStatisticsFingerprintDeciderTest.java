@@ -0,0 +1,154 @@
+package me.study.springbatch.part5;
+
+import me.study.springbatch.TestConfiguration;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.Step;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.configuration.annotation.JobBuilderFactory;
+import org.springframework.batch.core.configuration.annotation.StepBuilderFactory;
+import org.springframework.batch.repeat.RepeatStatus;
+import org.springframework.batch.test.JobLauncherTestUtils;
+import org.springframework.batch.test.context.SpringBatchTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ContextConfiguration;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Date;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBatchTest
+@ContextConfiguration(classes = {OrderStatisticsFingerprintDeciderTest.FingerprintJobConfiguration.class, TestConfiguration.class})
+class OrderStatisticsFingerprintDeciderTest {
+
+    @Autowired
+    private JobLauncherTestUtils jobLauncherTestUtils;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void test_fingerprint_follows_rollup() throws Exception {
+        // given
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        insertOrder(jdbcTemplate, 1_000, LocalDate.of(2021, 1, 1));
+        insertOrder(jdbcTemplate, 2_000, LocalDate.of(2021, 1, 2));
+        Path output = tempDir.resolve("2021년_1월_일별_주문_금액.csv");
+
+        // when
+        JobExecution first = launch(output);
+        String firstReport = read(output);
+        JobExecution second = launch(output);
+        insertOrder(jdbcTemplate, 4_000, LocalDate.of(2021, 1, 3));
+        JobExecution third = launch(output);
+
+        // then
+        // 처음 실행에서도 rollup 이 주문을 모두 반영한 뒤 보고서를 만든다.
+        assertThat(stepNames(first)).containsExactly("rollupStep", "statisticsStep");
+        assertThat(firstReport).isEqualTo("3000");
+
+        assertThat(second.getExitStatus().getExitCode()).isEqualTo(OrderStatisticsFingerprintDecider.UNCHANGED.getName());
+        assertThat(stepNames(second)).containsExactly("rollupStep");
+
+        // 새 주문이 rollup 에 반영되면 fingerprint 가 바뀌어 보고서를 다시 만든다.
+        assertThat(stepNames(third)).containsExactly("rollupStep", "statisticsStep");
+        assertThat(read(output)).isEqualTo("7000");
+    }
+
+    private JobExecution launch(Path output) throws Exception {
+        JobParameters jobParameters = jobLauncherTestUtils.getUniqueJobParametersBuilder()
+                .addString("date", "2021-01")
+                .addString("output", output.toString())
+                .toJobParameters();
+        return jobLauncherTestUtils.launchJob(jobParameters);
+    }
+
+    private void insertOrder(JdbcTemplate jdbcTemplate, long amount, LocalDate createdDate) {
+        jdbcTemplate.update("insert into orders(item_name, amount, created_date) values (?, ?, ?)",
+                "item", amount, Date.valueOf(createdDate));
+    }
+
+    private List<String> stepNames(JobExecution jobExecution) {
+        return jobExecution.getStepExecutions()
+                .stream()
+                .map(StepExecution::getStepName)
+                .collect(Collectors.toList());
+    }
+
+    private String read(Path path) throws Exception {
+        return new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+    }
+
+    @Configuration
+    static class FingerprintJobConfiguration {
+
+        @Bean
+        public Job fingerprintJob(JobBuilderFactory jobBuilderFactory,
+                                  Step rollupStep,
+                                  Step statisticsStep,
+                                  OrderStatisticsFingerprintDecider fingerprintDecider) {
+            return jobBuilderFactory.get("fingerprintJob")
+                    .start(rollupStep)
+                    .next(fingerprintDecider)
+                    .on(OrderStatisticsFingerprintDecider.UNCHANGED.getName())
+                    .end(OrderStatisticsFingerprintDecider.UNCHANGED.getName())
+                    .from(fingerprintDecider)
+                    .on("*")
+                    .to(statisticsStep)
+                    .build()
+                    .build();
+        }
+
+        @Bean
+        public Step rollupStep(StepBuilderFactory stepBuilderFactory, DataSource dataSource) {
+            return stepBuilderFactory.get("rollupStep")
+                    .tasklet(new DailyOrderRollupTasklet(dataSource, 0.01, Duration.ofMinutes(5)))
+                    .build();
+        }
+
+        /**
+         * 보고서 대신 해당 월 rollup 의 total_amount 합만 파일에 쓴다.
+         */
+        @Bean
+        public Step statisticsStep(StepBuilderFactory stepBuilderFactory,
+                                   DataSource dataSource,
+                                   OrderStatisticsFingerprintDecider fingerprintDecider) {
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+            return stepBuilderFactory.get("statisticsStep")
+                    .tasklet((contribution, chunkContext) -> {
+                        String output = chunkContext.getStepContext().getStepExecution()
+                                .getJobParameters().getString("output");
+                        Long total = jdbcTemplate.queryForObject(
+                                "select coalesce(sum(total_amount), 0) from daily_order_rollup", Long.class);
+                        Files.write(Paths.get(output), String.valueOf(total).getBytes(StandardCharsets.UTF_8));
+                        return RepeatStatus.FINISHED;
+                    })
+                    .listener(fingerprintDecider)
+                    .build();
+        }
+
+        @Bean
+        public OrderStatisticsFingerprintDecider fingerprintDecider(DataSource dataSource) {
+            return new OrderStatisticsFingerprintDecider(dataSource,
+                    jobParameters -> Paths.get(jobParameters.getString("output")));
+        }
+    }
+}
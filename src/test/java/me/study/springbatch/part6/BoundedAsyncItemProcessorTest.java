@@ -0,0 +1,67 @@
+package me.study.springbatch.part6;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BoundedAsyncItemProcessorTest {
+
+    @Test
+    void test_caller_runs_when_executor_is_full() throws Exception {
+        // given
+        List<Runnable> queued = new CopyOnWriteArrayList<>();
+        BoundedAsyncItemProcessor<Integer, Integer> itemProcessor =
+                new BoundedAsyncItemProcessor<>(item -> item * 10, queued::add, 2, true);
+
+        // when
+        Future<Integer> first = itemProcessor.process(1);
+        Future<Integer> second = itemProcessor.process(2);
+        Future<Integer> third = itemProcessor.process(3);
+
+        // then
+        assertThat(first.isDone()).isFalse();
+        assertThat(second.isDone()).isFalse();
+        assertThat(third.get()).isEqualTo(30);
+        assertThat(itemProcessor.getInFlight()).isEqualTo(2);
+        assertThat(itemProcessor.getStallCount()).isEqualTo(1);
+
+        queued.forEach(Runnable::run);
+        assertThat(first.get()).isEqualTo(10);
+        assertThat(second.get()).isEqualTo(20);
+        assertThat(itemProcessor.getInFlight()).isZero();
+    }
+
+    @Test
+    void test_reader_waits_until_a_task_completes() throws Exception {
+        // given
+        List<Runnable> queued = new CopyOnWriteArrayList<>();
+        BoundedAsyncItemProcessor<Integer, Integer> itemProcessor =
+                new BoundedAsyncItemProcessor<>(item -> item * 10, queued::add, 1, false);
+        Future<Integer> first = itemProcessor.process(1);
+
+        // when
+        CompletableFuture<Future<Integer>> second = CompletableFuture.supplyAsync(() -> {
+            try {
+                return itemProcessor.process(2);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        // then
+        Thread.sleep(100);
+        assertThat(second.isDone()).isFalse();
+
+        queued.get(0).run();
+        second.get(10, TimeUnit.SECONDS);
+        assertThat(first.get()).isEqualTo(10);
+        assertThat(itemProcessor.getStallCount()).isEqualTo(1);
+        assertThat(itemProcessor.getInFlight()).isEqualTo(1);
+    }
+}